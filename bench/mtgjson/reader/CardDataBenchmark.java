@@ -0,0 +1,95 @@
+package mtgjson.reader;
+
+import com.google.gson.JsonObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per card costs: building card data from json, the derived script properties,
+ * rendering a script and replacing the image line of an existing script.
+ * <p>
+ * A card renders its text and finds its timing features the first time they are
+ * used and keeps them, so the benchmarks of those build a new card each time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CardDataBenchmark {
+
+    @Param({"creature", "instant", "sorcery", "planeswalker", "aura"})
+    public String cardType;
+
+    private JsonObject jsonCard;
+    private CardData card;
+    private byte[] script;
+    private final StringBuilder sb = new StringBuilder(1024);
+
+    @Setup
+    public void setup() {
+        jsonCard = FeedGenerator.newCard(cardType, "Ætherling Oracle", new Random(1));
+        jsonCard.addProperty("number", "42");
+        card = new CardData(jsonCard, "ktk");
+        sb.setLength(0);
+        ScriptWriter.render(card, "https://example.com/old.jpg", sb);
+        script = sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    // json extraction only, the text is not rendered.
+    @Benchmark
+    public Object newCardData() {
+        return new CardData(jsonCard, "ktk");
+    }
+
+    // json extraction plus the ability, effect and oracle text transforms.
+    @Benchmark
+    public String renderText() {
+        return new CardData(jsonCard, "ktk").getOracleText();
+    }
+
+    // renderText plus the timing feature scan and the rule lookup.
+    @Benchmark
+    public String getTiming() {
+        return new CardData(jsonCard, "ktk").getTiming();
+    }
+
+    // the rule lookup alone, using the features kept by the card.
+    @Benchmark
+    public String getCachedTiming() {
+        return card.getTiming();
+    }
+
+    @Benchmark
+    public String getFilename() {
+        return card.getFilename();
+    }
+
+    @Benchmark
+    public int renderScript() {
+        sb.setLength(0);
+        ScriptWriter.render(card, card.getImageUrl(), sb);
+        return sb.length();
+    }
+
+    @Benchmark
+    public byte[] replaceImageLink() throws IOException {
+        return ImageLinkUpdater.replaceImageLink(script, card.getImageUrl());
+    }
+
+}
@@ -0,0 +1,255 @@
+package mtgjson.reader;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * Generates a synthetic AllPrintings.json style feed so that the benchmarks can be
+ * run offline against a feed of any size.
+ * <p>
+ * The first sets use real set codes (and so are extracted), the rest use made up
+ * codes which are skipped like the many unsupported sets in the real feed. Each
+ * set is a mix of creatures, instants, sorceries, planeswalkers, auras, artifacts
+ * and lands, about a third of which are reprints of cards from earlier sets. Each
+ * card also has the kind of fields that the reader has to skip (foreign data,
+ * legalities, rulings, etc).
+ * <pre>
+ * usage: FeedGenerator &lt;json file&gt; [sets] [cards per set] [seed]
+ * </pre>
+ */
+public final class FeedGenerator {
+
+    static final String[] CARD_TYPES = {
+        "creature", "instant", "sorcery", "planeswalker", "aura", "artifact", "land"
+    };
+
+    private static final String[] SET_CODES = {
+        "LEA", "LEB", "2ED", "ARN", "ATQ", "3ED", "LEG", "DRK", "FEM", "4ED", "ICE", "HML", "ALL", "MIR", "VIS",
+        "5ED", "POR", "WTH", "TMP", "STH", "EXO", "PO2", "USG", "ULG", "6ED", "PTK", "UDS", "S99", "MMQ", "NMS",
+        "S00", "PCY", "INV", "PLS", "7ED", "APC", "ODY", "TOR", "JUD", "ONS", "LGN", "SCG", "8ED", "MRD", "DST",
+        "5DN", "CHK", "BOK", "SOK", "9ED", "RAV", "GPT", "DIS", "CSP", "TSP", "PLC", "FUT", "10E", "LRW", "MOR",
+        "SHM", "EVE", "ALA", "CON", "ARB", "M10", "ZEN", "WWK", "ROE", "M11", "SOM", "MBS", "NPH", "CMD", "M12",
+        "ISD", "DKA", "AVR", "PC2", "M13", "RTR", "GTC", "DGM", "MMA", "JOU", "CNS", "M15", "KTK", "C14", "FRF",
+        "DTK", "MM2", "ORI", "BFZ", "OGW", "SOI", "EMA", "EMN", "CN2", "KLD", "C16", "AER", "MM3", "AKH", "HOU",
+        "C17", "XLN", "IMA", "RIX", "A25", "DOM", "M19", "C18", "GRN", "GNT"
+    };
+
+    private static final String[] ADJECTIVES = {
+        "Ancient", "Blazing", "Cunning", "Dread", "Ethereal", "Feral", "Gilded", "Hollow", "Iron", "Jaded",
+        "Kindled", "Lost", "Mire", "Noble", "Obsidian", "Primal", "Quiet", "Raging", "Silent", "Twisted",
+        "Æther", "Séance", "Thran"
+    };
+
+    private static final String[] NOUNS = {
+        "Drake", "Giant", "Oracle", "Knight", "Wurm", "Sphinx", "Goblin", "Elemental", "Vampire", "Angel",
+        "Charm", "Bolt", "Rite", "Pact", "Blessing", "Ruin", "Command", "Familiar", "Colossus", "Shade"
+    };
+
+    private static final String[] COLORS = {"White", "Blue", "Black", "Red", "Green"};
+    private static final String[] RARITIES = {"common", "common", "common", "uncommon", "uncommon", "rare", "mythic"};
+    private static final String[] MANA_COSTS = {"{W}", "{1}{U}", "{2}{B}{B}", "{R}", "{3}{G}", "{X}{U}{U}", "{2}{W}{U}"};
+
+    private static final String[] CREATURE_TEXTS = {
+        "Flying",
+        "Flying, haste",
+        "Defender\n{T}: Add {G}.",
+        "Exalted (Whenever a creature you control attacks alone, that creature gets +1/+1 until end of turn.)",
+        "When NAME enters the battlefield, draw a card.",
+        "Landfall — Whenever a land enters the battlefield under your control, NAME gets +2/+2 until end of turn.",
+        "Flash\nWhenever NAME deals combat damage to a player, that player discards a card.",
+    };
+
+    private static final String[] SPELL_TEXTS = {
+        "Counter target spell.",
+        "NAME deals 3 damage to any target.",
+        "Kicker {2}{R}\nDestroy target creature. If this spell was kicked, its controller loses 2 life.",
+        "Choose one —\n• Draw two cards.\n• Destroy target artifact.\n• You gain 3 life.",
+        "Split second\nTarget creature gets +3/+3 until end of turn.\nStorm",
+        "Return target creature card from your graveyard to your hand.\nFlashback {3}{B}",
+        "As an additional cost to cast this spell, sacrifice a creature.\nDraw three cards.\nCycling {2}",
+        "Convoke\nCreate two 1/1 white Soldier creature tokens.",
+        "This spell can't be countered.\nSearch your library for a card named NAME, reveal it and put it into your hand.",
+    };
+
+    private static final String[] PLANESWALKER_TEXTS = {
+        "+1: You gain 2 life.\n−3: Destroy target creature.\n−8: You get an emblem with \"Creatures you control get +2/+2.\"",
+        "+2: Draw a card.\n−2: Return target creature to its owner's hand.\n−7: Exile all permanents your opponents control.",
+    };
+
+    private static final String[] AURA_TEXTS = {
+        "Enchant creature\nEnchanted creature gets +2/+2 and has flying.",
+        "Enchant creature\nEnchanted creature can't attack or block.",
+        "Enchant land\nWhenever enchanted land is tapped for mana, its controller adds an additional {G}.",
+    };
+
+    private static final String[] ARTIFACT_TEXTS = {
+        "Equipped creature gets +2/+0.\nEquip {1}",
+        "{T}: Add one mana of any color.",
+        "{2}, {T}, Sacrifice NAME: Draw a card.",
+    };
+
+    private FeedGenerator() {}
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: FeedGenerator <json file> [sets] [cards per set] [seed]");
+            return;
+        }
+        final Path jsonFile = Paths.get(args[0]);
+        final int sets = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        final int cardsPerSet = args.length > 2 ? Integer.parseInt(args[2]) : 250;
+        final long seed = args.length > 3 ? Long.parseLong(args[3]) : 1L;
+        write(jsonFile, sets, cardsPerSet, seed);
+        System.out.printf("Created %s (%d sets, %d cards per set, %.1f MB).\n",
+                jsonFile, sets, cardsPerSet, Files.size(jsonFile) / 1e6);
+    }
+
+    /**
+     * Writes a feed with the given number of sets (in release date order) each with {@code cardsPerSet} cards.
+     */
+    static void write(final Path jsonFile, final int sets, final int cardsPerSet, final long seed) throws IOException {
+        final Random random = new Random(seed);
+        final Gson gson = new Gson();
+        int uniqueNames = 0;
+        try (final JsonWriter writer = new JsonWriter(Files.newBufferedWriter(jsonFile, StandardCharsets.UTF_8))) {
+            writer.beginObject();
+            for (int s = 0; s < sets; s++) {
+                final String setCode = s < SET_CODES.length ? SET_CODES[s] : String.format("X%02d", s - SET_CODES.length);
+                writer.name(setCode).beginObject();
+                writer.name("name").value(setCode + " set");
+                writer.name("code").value(setCode);
+                writer.name("releaseDate").value(String.format("%04d-%02d-%02d", 1993 + s / 12, 1 + s % 12, 1 + s % 28));
+                writer.name("type").value(s < SET_CODES.length ? "expansion" : "promo");
+                writer.name("cards").beginArray();
+                for (int c = 0; c < cardsPerSet; c++) {
+                    // about a third of each set are reprints of earlier cards.
+                    final boolean reprint = uniqueNames > cardsPerSet && random.nextInt(3) == 0;
+                    final int nameIndex = reprint ? random.nextInt(uniqueNames) : uniqueNames++;
+                    final String cardType = CARD_TYPES[nameIndex % CARD_TYPES.length];
+                    final JsonObject card = newCard(cardType, getCardName(nameIndex), new Random(seed + nameIndex));
+                    card.addProperty("number", String.valueOf(c + 1));
+                    card.addProperty("multiverseid", 1000 + s * cardsPerSet + c);
+                    addSkippedFields(card, setCode, random);
+                    gson.toJson(card, writer);
+                }
+                writer.endArray();
+                writer.endObject();
+            }
+            writer.endObject();
+        }
+    }
+
+    /**
+     * @return a json card of the given type (see CARD_TYPES) with only the fields read by CardData.
+     */
+    static JsonObject newCard(final String cardType, final String cardName, final Random random) {
+        final JsonObject card = new JsonObject();
+        card.addProperty("name", cardName);
+        card.addProperty("rarity", pick(RARITIES, random));
+        final JsonArray colors = new JsonArray();
+        colors.add(new JsonPrimitive(pick(COLORS, random)));
+        card.add("colors", colors);
+        switch (cardType) {
+            case "creature":
+                card.add("types", array("Creature"));
+                card.add("subtypes", array(pick(NOUNS, random), "Wizard"));
+                card.addProperty("manaCost", pick(MANA_COSTS, random));
+                card.addProperty("power", String.valueOf(random.nextInt(6)));
+                card.addProperty("toughness", String.valueOf(1 + random.nextInt(6)));
+                card.addProperty("text", named(pick(CREATURE_TEXTS, random), cardName));
+                break;
+            case "instant":
+            case "sorcery":
+                card.add("types", array(cardType.equals("instant") ? "Instant" : "Sorcery"));
+                card.addProperty("manaCost", pick(MANA_COSTS, random));
+                card.addProperty("text", named(pick(SPELL_TEXTS, random), cardName));
+                break;
+            case "planeswalker":
+                card.add("supertypes", array("Legendary"));
+                card.add("types", array("Planeswalker"));
+                card.add("subtypes", array(cardName.split(" ")[0]));
+                card.addProperty("manaCost", pick(MANA_COSTS, random));
+                card.addProperty("loyalty", String.valueOf(3 + random.nextInt(3)));
+                card.addProperty("text", pick(PLANESWALKER_TEXTS, random));
+                break;
+            case "aura":
+                card.add("types", array("Enchantment"));
+                card.add("subtypes", array("Aura"));
+                card.addProperty("manaCost", pick(MANA_COSTS, random));
+                card.addProperty("text", pick(AURA_TEXTS, random));
+                break;
+            case "artifact":
+                card.add("types", array("Artifact"));
+                card.add("subtypes", array("Equipment"));
+                card.addProperty("manaCost", pick(MANA_COSTS, random));
+                card.addProperty("text", named(pick(ARTIFACT_TEXTS, random), cardName));
+                break;
+            case "land":
+                card.add("types", array("Land"));
+                card.addProperty("text", "{T}: Add {C}.\n{1}, {T}: Add one mana of any color.");
+                break;
+            default:
+                throw new IllegalArgumentException(cardType);
+        }
+        return card;
+    }
+
+    private static String getCardName(final int nameIndex) {
+        final String name = ADJECTIVES[nameIndex % ADJECTIVES.length] + " " + NOUNS[(nameIndex / ADJECTIVES.length) % NOUNS.length];
+        final int round = nameIndex / (ADJECTIVES.length * NOUNS.length);
+        return round == 0 ? name : name + " " + round;
+    }
+
+    private static void addSkippedFields(final JsonObject card, final String setCode, final Random random) {
+        card.addProperty("artist", "Artist " + random.nextInt(200));
+        card.addProperty("flavorText", "Flavor text which is never read by the generator.");
+        card.add("printings", array(setCode, "M19", "A25"));
+        final JsonObject legalities = new JsonObject();
+        legalities.addProperty("commander", "Legal");
+        legalities.addProperty("legacy", "Legal");
+        legalities.addProperty("vintage", "Legal");
+        card.add("legalities", legalities);
+        final JsonArray foreignData = new JsonArray();
+        for (String language : new String[] {"German", "French", "Japanese"}) {
+            final JsonObject foreign = new JsonObject();
+            foreign.addProperty("language", language);
+            foreign.addProperty("name", "Name in " + language);
+            foreign.addProperty("text", "Text in " + language);
+            foreignData.add(foreign);
+        }
+        card.add("foreignData", foreignData);
+        final JsonArray rulings = new JsonArray();
+        final JsonObject ruling = new JsonObject();
+        ruling.addProperty("date", "2018-01-19");
+        ruling.addProperty("text", "A ruling which is never read by the generator.");
+        rulings.add(ruling);
+        card.add("rulings", rulings);
+    }
+
+    private static String named(final String text, final String cardName) {
+        return text.replace("NAME", cardName);
+    }
+
+    private static String pick(final String[] values, final Random random) {
+        return values[random.nextInt(values.length)];
+    }
+
+    private static JsonArray array(final String... values) {
+        final JsonArray array = new JsonArray();
+        for (String value : values) {
+            array.add(new JsonPrimitive(value));
+        }
+        return array;
+    }
+
+}
@@ -0,0 +1,115 @@
+package mtgjson.reader;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Checks that {@link ImageLinkUpdater#replaceImageLink} gives the same script as
+ * rewriting it a line at a time, which is how the image links were updated before
+ * the image line was spliced in. Run it after changing the updater (make check).
+ * <p>
+ * The scripts are generated with unix, windows and old mac line endings (or a mix),
+ * with and without a final line ending, with no image line, several image lines or
+ * lines which only look like one, and with an image which is already correct.
+ * <pre>
+ * usage: ImageLinkUpdaterCheck [scripts] [seed]
+ * </pre>
+ */
+public final class ImageLinkUpdaterCheck {
+
+    private static final String[] LINES = {
+        "name=Æther Adept",
+        "image=https://img.scryfall.com/cards/large/en/m12/41.jpg",
+        "image=",
+        "images=https://example.com/x.jpg",
+        " image=https://example.com/indented.jpg",
+        "value=2.500",
+        "rarity=C",
+        "type=Creature",
+        "oracle=When SN enters the battlefield, return target creature to its owner's hand.",
+        "",
+    };
+
+    private static final String[] LINE_ENDINGS = {"\n", "\n", "\n", "\r\n", "\r"};
+
+    private static final String[] URLS = {
+        "https://img.scryfall.com/cards/large/en/m12/41.jpg",
+        "http://magiccards.info/scans/en/m12/41.jpg",
+        "https://example.com/séance.jpg",
+        "",
+    };
+
+    private static final int MAX_MISMATCHES = 10;
+
+    private ImageLinkUpdaterCheck() {}
+
+    public static void main(String[] args) throws IOException {
+        final int count = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        final long seed = args.length > 1 ? Long.parseLong(args[1]) : 1L;
+        final Random random = new Random(seed);
+        int mismatches = 0;
+        int unchanged = 0;
+        for (int i = 0; i < count; i++) {
+            final byte[] script = newScript(random);
+            final String imageUrl = URLS[random.nextInt(URLS.length)];
+            final byte[] expected = replaceImageLinkByLine(script, imageUrl);
+            final byte[] actual = ImageLinkUpdater.replaceImageLink(script, imageUrl);
+            if (Arrays.equals(script, actual)) {
+                unchanged++;
+            }
+            if (!Arrays.equals(expected, actual) && ++mismatches <= MAX_MISMATCHES) {
+                System.out.printf("Mismatch for image %s in:\n%s\n  expected %s\n  actual   %s\n", imageUrl,
+                        escape(script), escape(expected), escape(actual));
+            }
+        }
+        System.out.printf("Checked %d scripts (%d already up to date), %d mismatches.\n", count, unchanged, mismatches);
+        if (mismatches > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static byte[] newScript(final Random random) {
+        final StringBuilder sb = new StringBuilder();
+        final boolean mixed = random.nextInt(4) == 0;
+        final String lineEnding = LINE_ENDINGS[random.nextInt(LINE_ENDINGS.length)];
+        final int lines = random.nextInt(8);
+        for (int i = 0; i < lines; i++) {
+            if (i > 0) {
+                sb.append(mixed ? LINE_ENDINGS[random.nextInt(LINE_ENDINGS.length)] : lineEnding);
+            }
+            sb.append(LINES[random.nextInt(LINES.length)]);
+        }
+        if (lines > 0 && random.nextInt(4) != 0) {
+            sb.append(lineEnding);
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the script rewritten line by line with unix line endings, as
+     * MtgJsonReader.replaceScriptImageLink used to.
+     */
+    private static byte[] replaceImageLinkByLine(final byte[] script, final String imageUrl) throws IOException {
+        final StringBuilder sb = new StringBuilder();
+        try (final BufferedReader reader = new BufferedReader(new StringReader(new String(script, StandardCharsets.UTF_8)))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("image=")) {
+                    sb.append("image=").append(imageUrl).append('\n');
+                } else {
+                    sb.append(line).append('\n');
+                }
+            }
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String escape(final byte[] script) {
+        return new String(script, StandardCharsets.UTF_8).replace("\r", "\\r").replace("\n", "\\n");
+    }
+
+}
@@ -0,0 +1,81 @@
+package mtgjson.reader;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading the card data from a generated multi-set feed, either by parsing the
+ * json (see -DextractThreads) or from a card cache saved from the same feed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class JsonFeedBenchmark {
+
+    @Param({"150"})
+    public int sets;
+
+    @Param({"250"})
+    public int cardsPerSet;
+
+    private Path folder;
+    private ScriptGenerator.Config parseConfig;
+    private ScriptGenerator.Config cacheConfig;
+
+    @Setup
+    public void setup() throws IOException {
+        folder = Files.createTempDirectory("mtgjson-bench");
+        Files.createDirectory(folder.resolve("INPUT"));
+        FeedGenerator.write(folder.resolve("INPUT").resolve("AllPrintings.json"), sets, cardsPerSet, 1L);
+        final PrintStream log = new PrintStream(new NullOutputStream());
+        parseConfig = ScriptGenerator.Config.builder()
+                .baseFolder(folder)
+                .cardCache(false)
+                .extractThreads(Integer.getInteger("extractThreads", Runtime.getRuntime().availableProcessors()))
+                .log(log)
+                .build();
+        cacheConfig = ScriptGenerator.Config.builder()
+                .baseFolder(folder)
+                .log(log)
+                .build();
+        // saves the card cache.
+        new ScriptGenerator(cacheConfig).loadCards();
+    }
+
+    @TearDown
+    public void tearDown() {
+        FileUtils.deleteQuietly(folder.toFile());
+    }
+
+    @Benchmark
+    public Object parseJsonFeed() throws IOException {
+        return new ScriptGenerator(parseConfig).loadCards();
+    }
+
+    @Benchmark
+    public Object loadCardCache() throws IOException {
+        return new ScriptGenerator(cacheConfig).loadCards();
+    }
+
+}
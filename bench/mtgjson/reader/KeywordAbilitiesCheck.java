@@ -0,0 +1,128 @@
+package mtgjson.reader;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Checks that {@link KeywordAbilities} gives the same ability and effect text as
+ * trying every rule of its table in turn, which is how the rules were applied before
+ * the keyword scan. Run it after changing the rule table (make check).
+ * <p>
+ * The effect texts are generated from the keywords of the rules, with a random
+ * cost or reminder text, mixed with ordinary effects and parts of keywords which
+ * can join up into a keyword once a rule has removed the text between them.
+ * <pre>
+ * usage: KeywordAbilitiesCheck [texts] [seed]
+ * </pre>
+ */
+public final class KeywordAbilitiesCheck {
+
+    private static final String[] TAILS = {
+        "", "", " {2}{R}", " 3—{1}{R}", " {X}", " artifacts.", " sacrifice a creature.",
+        " during your turn.", ", sacrifice a land.", " (reminder text.)", "."
+    };
+
+    private static final String[] EFFECTS = {
+        "Draw a card.",
+        "SN deals 3 damage to any target.",
+        "Counter target spell.",
+        "Destroy target creature. It can't be regenerated.",
+        "You may pay {1} rather than pay this spell's mana cost.",
+        "If you control a Forest, you may pay {G} rather than pay this spell's mana cost.",
+        "If an opponent cast two spells this turn, you may pay {0} rather than pay this spell's mana cost.",
+        "Choose one —\n• Draw two cards.\n• You gain 3 life.",
+    };
+
+    private static final int MAX_MISMATCHES = 10;
+
+    private KeywordAbilitiesCheck() {}
+
+    public static void main(String[] args) {
+        final int count = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        final long seed = args.length > 1 ? Long.parseLong(args[1]) : 1L;
+        final List<Pattern> patterns = new ArrayList<>();
+        final List<String> keywords = new ArrayList<>();
+        for (KeywordAbilities.Rule rule : KeywordAbilities.getRules()) {
+            patterns.add(Pattern.compile(rule.regex));
+            keywords.add(rule.keyword);
+        }
+        final Random random = new Random(seed);
+        int mismatches = 0;
+        int withAbilities = 0;
+        for (int i = 0; i < count; i++) {
+            final String effectText = newEffectText(random, keywords);
+            final String[] expected = extractByEveryRule(patterns, effectText);
+            final KeywordAbilities actual = KeywordAbilities.extract(effectText);
+            if (expected[0] != null) {
+                withAbilities++;
+            }
+            if (!equals(expected[0], actual.getAbilityText()) || !expected[1].equals(actual.getEffectText())) {
+                if (++mismatches <= MAX_MISMATCHES) {
+                    System.out.printf("Mismatch for \"%s\":\n  expected %s | %s\n  actual   %s | %s\n",
+                            effectText, expected[0], expected[1], actual.getAbilityText(), actual.getEffectText());
+                }
+            }
+        }
+        System.out.printf("Checked %d effect texts (%d with keyword abilities), %d mismatches.\n",
+                count, withAbilities, mismatches);
+        if (mismatches > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static String newEffectText(final Random random, final List<String> keywords) {
+        final StringBuilder sb = new StringBuilder();
+        if (random.nextInt(8) == 0) {
+            sb.append('~');
+        }
+        final int parts = 1 + random.nextInt(6);
+        for (int p = 0; p < parts; p++) {
+            if (p > 0) {
+                sb.append(random.nextInt(6) == 0 ? " " : "~");
+            }
+            final String keyword = keywords.get(random.nextInt(keywords.size()));
+            switch (random.nextInt(5)) {
+                case 0:
+                    sb.append(EFFECTS[random.nextInt(EFFECTS.length)]);
+                    break;
+                case 1:
+                    // part of a keyword, which may be completed by the text after a later removal.
+                    final int split = 1 + random.nextInt(keyword.length());
+                    sb.append(random.nextBoolean() ? keyword.substring(0, split) : keyword.substring(split - 1));
+                    break;
+                default:
+                    sb.append(keyword).append(TAILS[random.nextInt(TAILS.length)]);
+                    break;
+            }
+        }
+        if (random.nextInt(8) == 0) {
+            sb.append('~');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return the ability text (or null) and effect text, applying each rule in turn as
+     * CardData.extractAbilitiesFromEffects used to.
+     */
+    private static String[] extractByEveryRule(final List<Pattern> patterns, final String text) {
+        String abilityText = null;
+        String effectText = text;
+        for (Pattern pattern : patterns) {
+            final Matcher matcher = pattern.matcher(effectText);
+            if (matcher.find()) {
+                abilityText = (abilityText == null) ? matcher.group(0).replaceFirst("(^~|~(?!.))", "").replaceAll("~", ";\\\\\n        ") : abilityText + ";\\\n        " + matcher.group(0).replaceFirst("^~", "").replaceAll("~", ";\\\\\n        ");
+                effectText = pattern.matcher(effectText).replaceFirst("");
+            }
+        }
+        return new String[]{abilityText, effectText};
+    }
+
+    private static boolean equals(final String a, final String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+}
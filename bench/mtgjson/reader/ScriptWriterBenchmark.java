@@ -0,0 +1,66 @@
+package mtgjson.reader;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing a folder of missing card scripts, as done for the scripts_missing folder.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ScriptWriterBenchmark {
+
+    @Param({"2000"})
+    public int cardCount;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private Path folder;
+    private final List<CardData> cards = new ArrayList<>();
+
+    @Setup
+    public void setup() throws IOException {
+        folder = Files.createTempDirectory("mtgjson-bench");
+        final Random random = new Random(1);
+        for (int i = 0; i < cardCount; i++) {
+            final String cardType = FeedGenerator.CARD_TYPES[i % FeedGenerator.CARD_TYPES.length];
+            final CardData card = new CardData(FeedGenerator.newCard(cardType, "Benchmark Card " + i, random), "ktk");
+            cards.add(card);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        FileUtils.deleteQuietly(folder.toFile());
+    }
+
+    @Benchmark
+    public int writeScripts() {
+        return new ScriptWriter(folder, threads, (scriptFilename, imageUrl) -> imageUrl).write(cards);
+    }
+
+}
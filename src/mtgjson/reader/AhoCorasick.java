@@ -0,0 +1,163 @@
+package mtgjson.reader;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+
+/**
+ * Finds every occurrence of a fixed set of literal patterns in a single pass over
+ * the text (Aho-Corasick), however many patterns there are.
+ * <p>
+ * The patterns are built into a trie whose nodes also link to the longest suffix
+ * which is a node of the trie, so the scan never backs up. Each node keeps its
+ * transitions as sorted char arrays and the patterns which end there, including
+ * those ending at its suffix nodes. It does not change once built so the same
+ * instance can be shared between threads.
+ */
+final class AhoCorasick {
+
+    /**
+     * Called for each occurrence of a pattern, in order of where it ends.
+     */
+    interface MatchHandler {
+
+        /**
+         * @param pattern the index of the pattern in the list it was built from.
+         * @param end the index in the text just after the last char of the occurrence.
+         */
+        void found(int pattern, int end);
+    }
+
+    private static final int[] NO_PATTERNS = new int[0];
+
+    private final int[] patternLengths;
+
+    // per node, the sorted chars with a transition and the node each leads to.
+    private final char[][] chars;
+    private final int[][] next;
+
+    // per node, the longest proper suffix which is also a node (0 = the root).
+    private final int[] fail;
+
+    // per node, the patterns which end at the node, longest first.
+    private final int[][] outputs;
+
+    AhoCorasick(final List<String> patterns) {
+        patternLengths = new int[patterns.size()];
+
+        final List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+        final List<List<Integer>> ends = new ArrayList<>();
+        trie.add(new TreeMap<>());
+        ends.add(new ArrayList<>());
+        for (int p = 0; p < patterns.size(); p++) {
+            final String pattern = patterns.get(p);
+            if (pattern.isEmpty()) {
+                throw new IllegalArgumentException("Empty pattern at index " + p);
+            }
+            patternLengths[p] = pattern.length();
+            int node = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                Integer child = trie.get(node).get(pattern.charAt(i));
+                if (child == null) {
+                    child = trie.size();
+                    trie.get(node).put(pattern.charAt(i), child);
+                    trie.add(new TreeMap<>());
+                    ends.add(new ArrayList<>());
+                }
+                node = child;
+            }
+            ends.get(node).add(p);
+        }
+
+        final int size = trie.size();
+        chars = new char[size][];
+        next = new int[size][];
+        fail = new int[size];
+        outputs = new int[size][];
+        for (int node = 0; node < size; node++) {
+            final TreeMap<Character, Integer> edges = trie.get(node);
+            chars[node] = new char[edges.size()];
+            next[node] = new int[edges.size()];
+            int i = 0;
+            for (Map.Entry<Character, Integer> edge : edges.entrySet()) {
+                chars[node][i] = edge.getKey();
+                next[node][i] = edge.getValue();
+                i++;
+            }
+        }
+
+        // breadth first so the suffix node of each node is done before the node.
+        final Queue<Integer> queue = new ArrayDeque<>();
+        outputs[0] = NO_PATTERNS;
+        for (int child : next[0]) {
+            fail[child] = 0;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            final int node = queue.remove();
+            final int[] suffixOutputs = outputs[fail[node]];
+            final List<Integer> own = ends.get(node);
+            if (own.isEmpty()) {
+                outputs[node] = suffixOutputs;
+            } else {
+                outputs[node] = Arrays.copyOf(toArray(own), own.size() + suffixOutputs.length);
+                System.arraycopy(suffixOutputs, 0, outputs[node], own.size(), suffixOutputs.length);
+            }
+            for (int i = 0; i < chars[node].length; i++) {
+                final int child = next[node][i];
+                int suffix = fail[node];
+                int target = step(suffix, chars[node][i]);
+                while (target < 0 && suffix != 0) {
+                    suffix = fail[suffix];
+                    target = step(suffix, chars[node][i]);
+                }
+                fail[child] = target < 0 ? 0 : target;
+                queue.add(child);
+            }
+        }
+    }
+
+    private static int[] toArray(final List<Integer> values) {
+        final int[] array = new int[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+
+    /**
+     * @return the node reached from {@code node} by {@code c} or -1 if there is no transition.
+     */
+    private int step(final int node, final char c) {
+        final int i = Arrays.binarySearch(chars[node], c);
+        return i >= 0 ? next[node][i] : -1;
+    }
+
+    int getPatternLength(final int pattern) {
+        return patternLengths[pattern];
+    }
+
+    /**
+     * Reports every occurrence of every pattern in the text, overlapping occurrences included.
+     */
+    void scan(final CharSequence text, final MatchHandler handler) {
+        int node = 0;
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            int target = step(node, c);
+            while (target < 0 && node != 0) {
+                node = fail[node];
+                target = step(node, c);
+            }
+            node = target < 0 ? 0 : target;
+            for (int pattern : outputs[node]) {
+                handler.found(pattern, i + 1);
+            }
+        }
+    }
+
+}
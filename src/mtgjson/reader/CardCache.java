@@ -0,0 +1,182 @@
+package mtgjson.reader;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Binary cache of the card data extracted from the json feed so that repeat runs
+ * against an unchanged feed do not need to parse it again.
+ * <p>
+ * The cache is only used if the json file has the same size and either the same
+ * modified time or the same content hash as when the cache was saved, and if the
+ * settings used to extract the cards (see {@code settingsKey}) are unchanged.
+ */
+final class CardCache {
+
+    private static final int MAGIC = 0x4D4A4343; // "MJCC"
+
+    // increment whenever the cache layout or the card data it holds changes.
+    private static final int VERSION = 4;
+
+    /**
+     * The sorted set codes and cards (in the order they were selected) for a feed.
+     */
+    static final class Contents {
+
+        private final SortedMap<String, String> sortedSetCodes;
+        private final List<String> keys;
+        private final List<CardData> cards;
+
+        Contents(SortedMap<String, String> sortedSetCodes, List<String> keys, List<CardData> cards) {
+            this.sortedSetCodes = sortedSetCodes;
+            this.keys = keys;
+            this.cards = cards;
+        }
+
+        SortedMap<String, String> getSortedSetCodes() {
+            return sortedSetCodes;
+        }
+
+        List<String> getKeys() {
+            return keys;
+        }
+
+        List<CardData> getCards() {
+            return cards;
+        }
+    }
+
+    private final Path cacheFile;
+    private final Path jsonFile;
+    private final String settingsKey;
+
+    CardCache(final Path cacheFile, final Path jsonFile, final String settingsKey) {
+        this.cacheFile = cacheFile;
+        this.jsonFile = jsonFile;
+        this.settingsKey = settingsKey;
+    }
+
+    /**
+     * @return the cached contents or null if there is no valid cache for the json file.
+     */
+    Contents load() throws IOException {
+        if (!Files.isRegularFile(cacheFile)) {
+            return null;
+        }
+        try (final FileChannel channel = FileChannel.open(cacheFile, StandardOpenOption.READ)) {
+            return load(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (BufferUnderflowException e) {
+            // truncated cache file.
+            return null;
+        }
+    }
+
+    private Contents load(final MappedByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < 8 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            return null;
+        }
+        final String cachedSettingsKey = readString(buffer);
+        final long jsonSize = buffer.getLong();
+        final long jsonModified = buffer.getLong();
+        final String jsonHash = readString(buffer);
+        if (!settingsKey.equals(cachedSettingsKey) || Files.size(jsonFile) != jsonSize) {
+            return null;
+        }
+        if (Files.getLastModifiedTime(jsonFile).toMillis() != jsonModified && !jsonHash.equals(hashOf(jsonFile))) {
+            return null;
+        }
+
+        final SortedMap<String, String> sortedSetCodes = new TreeMap<>(Collections.reverseOrder());
+        final int setCount = buffer.getInt();
+        for (int i = 0; i < setCount; i++) {
+            sortedSetCodes.put(readString(buffer), readString(buffer));
+        }
+        final int cardCount = buffer.getInt();
+        final List<String> keys = new ArrayList<>(cardCount);
+        final List<CardData> cards = new ArrayList<>(cardCount);
+        final CardData.SharedValues values = new CardData.SharedValues();
+        for (int i = 0; i < cardCount; i++) {
+            keys.add(readString(buffer));
+            cards.add(new CardData(buffer, values));
+        }
+        return new Contents(sortedSetCodes, keys, cards);
+    }
+
+    /**
+     * Saves the contents extracted from the json file, which had the given content hash.
+     * The cache is written to a temporary file first so an interrupted save is never used.
+     */
+    void save(final Contents contents, final String jsonHash) throws IOException {
+        final Path tempFile = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+        try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeString(out, settingsKey);
+            out.writeLong(Files.size(jsonFile));
+            out.writeLong(Files.getLastModifiedTime(jsonFile).toMillis());
+            writeString(out, jsonHash);
+            out.writeInt(contents.sortedSetCodes.size());
+            for (Map.Entry<String, String> entry : contents.sortedSetCodes.entrySet()) {
+                writeString(out, entry.getKey());
+                writeString(out, entry.getValue());
+            }
+            out.writeInt(contents.cards.size());
+            for (int i = 0; i < contents.cards.size(); i++) {
+                writeString(out, contents.keys.get(i));
+                contents.cards.get(i).write(out);
+            }
+        }
+        Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static String hashOf(final Path file) throws IOException {
+        final MessageDigest digest = ContentHash.newDigest();
+        final byte[] bytes = new byte[1 << 16];
+        try (final InputStream in = Files.newInputStream(file)) {
+            int count;
+            while ((count = in.read(bytes)) > 0) {
+                digest.update(bytes, 0, count);
+            }
+        }
+        return ContentHash.toHex(digest.digest());
+    }
+
+    static void writeString(final DataOutputStream out, final String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    static String readString(final ByteBuffer buffer) {
+        final int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+}
@@ -2,28 +2,111 @@ package mtgjson.reader;
 
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
-
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Locale;
-import java.util.SortedMap;
-import java.util.TreeMap;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
-class CardData {
-
-    public static final SortedMap<String, String> cardImageErrors = new TreeMap<>();
-
-    private static void addCardImageError(final CardData card, final String errorDetails) {
-        String key = card.cardName;
-        if (!cardImageErrors.containsKey(key)) {
-            cardImageErrors.put(key, errorDetails);
-        }
-    }
-
-    private static void clearCardImageError(final CardData card) {
-        String key = card.getCardName();
-        if (cardImageErrors.containsKey(key)) {
-            cardImageErrors.remove(key);
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+public class CardData {
+
+    // json card fields read by CardData - all other fields in the feed can be skipped.
+    public static final Set<String> JSON_FIELDS = Collections.unmodifiableSet(new HashSet<>(
+        Arrays.asList(
+            "name", "rarity", "number", "mciNumber", "multiverseid", "manaCost", "colors",
+            "power", "toughness", "supertypes", "types", "subtypes", "loyalty", "text", "faceName"
+        )
+    ));
+
+    private static final TextRules ABILITY_TEXT_RULES = TextRules.of(
+        TextRules.replaceAll("^\\(.+?\\)\n", ""),
+        TextRules.replaceAll("^[^I —]— ", ""),
+        TextRules.replace("\n", ";\\\n        "),
+        TextRules.replace(";\\\n        •", " \\\n        •"),
+        TextRules.replaceAll(" \\(.+?\\)", ""),
+        TextRules.replaceFirst(" •", " (1)"),
+        TextRules.replaceFirst(" •", " (2)"),
+        TextRules.replaceFirst(" •", " (3)"),
+        TextRules.replaceFirst(" •", " (4)"),
+        TextRules.replaceAll("\n.+ — ", "\n        ")
+    );
+
+    private static final TextRules EFFECT_TEXT_RULES = TextRules.of(
+        TextRules.replaceAll("^\\(.+?\\)\n", ""),
+        TextRules.replaceAll("^.+— ", ""),
+        TextRules.replace("\n", "~"),
+        TextRules.replaceAll("~.+? — ", "~"),
+        TextRules.replaceAll(" \\(.+?\\)", ""),
+        TextRules.replaceAll("\n~•", "~•"),
+        TextRules.replaceFirst("~•", " (1)"),
+        TextRules.replaceFirst("~•", " (2)"),
+        TextRules.replaceFirst("~•", " (3)"),
+        TextRules.replaceFirst("~•", " (4)"),
+        TextRules.replaceAll("\n.+ — ", "\n        ")
+    );
+
+    private static final TextRules ORACLE_TEXT_RULES = TextRules.of(
+        TextRules.replaceAll("^\\(.+?\\)\n", ""),
+        TextRules.replaceAll(" \\(.+?\\)", ""),
+        TextRules.replaceAll("\n", "\\\\n"),
+        TextRules.replaceAll(";", ",")
+    );
+
+    private static final TextRules COLOR_RULES = TextRules.of(
+        TextRules.replace("Blue", "U"),
+        TextRules.replaceAll("\\W", ""),
+        TextRules.replaceAll("[a-z]", "")
+    );
+
+    private static final TextRules ASCII_NAME_RULES = TextRules.of(
+        TextRules.replace("Æ", "_"),
+        TextRules.replace("á", "_"),
+        TextRules.replace("à", "_"),
+        TextRules.replace("â", "_"),
+        TextRules.replace("é", "_"),
+        TextRules.replace("í", "_"),
+        TextRules.replace("ö", "_"),
+        TextRules.replace("ú", "_"),
+        TextRules.replace("û", "_")
+    );
+
+    private static final TextRules SUBTYPE_RULES = TextRules.of(
+        TextRules.replace("\"", ""),
+        TextRules.replace(" ", "_"),
+        TextRules.replace("’s", "'s"),
+        TextRules.replace("-", "_")
+    );
+
+    private static final TextRules FILENAME_RULES = TextRules.of(
+        TextRules.replaceAll("[^A-Za-z0-9]", "_")
+    );
+
+    // image urls for cards created without a generator (see the public constructor).
+    private static final ImageUrlResolver DEFAULT_IMAGE_URLS =
+            new ImageUrlChain(ImageUrlResolver.parseChain(ImageUrlResolver.DEFAULT_CHAIN));
+
+    /**
+     * Shared instances of the short values (rarity, types, mana cost, etc.) which repeat
+     * across thousands of cards. Each parse of the json feed (or load of the card cache)
+     * has its own, so the values are released along with the cards.
+     */
+    static final class SharedValues {
+
+        private final ConcurrentMap<String, String> values = new ConcurrentHashMap<>();
+
+        String share(final String value) {
+            if (value == null) {
+                return null;
+            }
+            final String shared = values.putIfAbsent(value, value);
+            return shared != null ? shared : value;
         }
     }
 
@@ -42,6 +125,7 @@ class CardData {
 
     private String cardName;
     private String imageUrl = "";
+    private String imageError;
     private String rarity;
     private String manaCost;
     private String type;
@@ -51,205 +135,253 @@ class CardData {
     private String power;
     private String toughness;
     private String text;
+    private String loyalty;
+    // the name of the half of a split card (etc) whose text this card has, null for other cards.
+    private String faceName;
+    private final String setCode;
+
+    // the name replaced by SN in the rendered text, which is the json card name
+    // even if the card is renamed (see withCardName).
+    private final String textCardName;
+
+    // rendered from text on first use since most cards are never written.
+    private volatile boolean isTextRendered;
     private String effectText;
     private String abilityText;
     private String oracleText;
-    private String loyalty;
-    private final String setCode;
+
+    // found on first use, see getTiming.
+    private volatile TimingFeatures timingFeatures;
+
+    private static final class TimingFeatures {
+
+        private final TimingRules rules;
+        private final long bits;
+
+        private TimingFeatures(final TimingRules rules, final long bits) {
+            this.rules = rules;
+            this.bits = bits;
+        }
+    }
 
     public CardData(final JsonObject jsonCard, final String setCode) {
+        this(jsonCard, setCode, DEFAULT_IMAGE_URLS.forSet(setCode, setCode), new SharedValues(), true);
+    }
+
+    /**
+     * @param imageUrls the image urls of the cards in the set the card is from.
+     * @param values the values shared with the other cards from the same json feed.
+     */
+    CardData(
+            final JsonObject jsonCard,
+            final String setCode,
+            final ImageUrlResolver.SetImageUrls imageUrls,
+            final SharedValues values) {
+        this(jsonCard, setCode, imageUrls, values, true);
+    }
 
-        this.setCode = setCode;
+    private CardData(
+            final JsonObject jsonCard,
+            final String setCode,
+            final ImageUrlResolver.SetImageUrls imageUrls,
+            final SharedValues values,
+            final boolean isComplete) {
+
+        this.setCode = values.share(setCode);
 
         extractCardName(jsonCard);
-        extractImageUrl(jsonCard);
-        extractRarity(jsonCard);
-        extractManaCost(jsonCard);
-        extractColor(jsonCard);
-        extractPower(jsonCard);
-        extractToughness(jsonCard);
-        extractSuperTypes(jsonCard);
-        extractTypes(jsonCard);
-        extractSubTypes(jsonCard);
+        this.textCardName = cardName;
+        extractImageUrl(jsonCard, imageUrls);
+
+        if (!isComplete) {
+            return;
+        }
+
+        extractRarity(jsonCard, values);
+        extractManaCost(jsonCard, values);
+        extractColor(jsonCard, values);
+        extractPower(jsonCard, values);
+        extractToughness(jsonCard, values);
+        extractSuperTypes(jsonCard, values);
+        extractTypes(jsonCard, values);
+        extractSubTypes(jsonCard, values);
 
         if (jsonCard.has("loyalty")) {
-            extractLoyalty(jsonCard);
+            extractLoyalty(jsonCard, values);
         }
 
         if (jsonCard.has("text")) {
             setText(jsonCard.get("text").getAsString());
-            if (jsonCard.has("types") && (getType().contains("Instant") || getType().contains("Sorcery"))) {
-                extractEffectText(jsonCard);
-                extractAbilitiesFromEffects();
-            } else {
-                extractAbilityText(jsonCard);
+        }
+
+        if (jsonCard.has("faceName")) {
+            faceName = jsonCard.get("faceName").getAsString();
+        }
+    }
+
+    /**
+     * @return card data with just the name, script filename and image url (or image error),
+     * enough to match the card by name and update the image of an existing script.
+     */
+    static CardData imageLinkOnly(
+            final JsonObject jsonCard,
+            final String setCode,
+            final ImageUrlResolver.SetImageUrls imageUrls,
+            final SharedValues values) {
+        return new CardData(jsonCard, setCode, imageUrls, values, false);
+    }
+
+    /**
+     * Restores card data saved by {@link #write}.
+     */
+    CardData(final ByteBuffer buffer, final SharedValues values) {
+        setCode = values.share(CardCache.readString(buffer));
+        cardName = CardCache.readString(buffer);
+        textCardName = cardName;
+        imageUrl = CardCache.readString(buffer);
+        imageError = CardCache.readString(buffer);
+        rarity = values.share(CardCache.readString(buffer));
+        manaCost = values.share(CardCache.readString(buffer));
+        type = values.share(CardCache.readString(buffer));
+        color = values.share(CardCache.readString(buffer));
+        superType = values.share(CardCache.readString(buffer));
+        subTypes = values.share(CardCache.readString(buffer));
+        power = values.share(CardCache.readString(buffer));
+        toughness = values.share(CardCache.readString(buffer));
+        text = CardCache.readString(buffer);
+        loyalty = values.share(CardCache.readString(buffer));
+        faceName = CardCache.readString(buffer);
+    }
+
+    void write(final DataOutputStream out) throws IOException {
+        CardCache.writeString(out, setCode);
+        CardCache.writeString(out, cardName);
+        CardCache.writeString(out, imageUrl);
+        CardCache.writeString(out, imageError);
+        CardCache.writeString(out, rarity);
+        CardCache.writeString(out, manaCost);
+        CardCache.writeString(out, type);
+        CardCache.writeString(out, color);
+        CardCache.writeString(out, superType);
+        CardCache.writeString(out, subTypes);
+        CardCache.writeString(out, power);
+        CardCache.writeString(out, toughness);
+        CardCache.writeString(out, text);
+        CardCache.writeString(out, loyalty);
+        CardCache.writeString(out, faceName);
+    }
+
+    private CardData(final CardData card, final String cardName) {
+        this.setCode = card.setCode;
+        this.cardName = cardName;
+        this.textCardName = card.textCardName;
+        this.imageUrl = card.imageUrl;
+        this.imageError = card.imageError;
+        this.rarity = card.rarity;
+        this.manaCost = card.manaCost;
+        this.type = card.type;
+        this.color = card.color;
+        this.superType = card.superType;
+        this.subTypes = card.subTypes;
+        this.power = card.power;
+        this.toughness = card.toughness;
+        this.text = card.text;
+        this.loyalty = card.loyalty;
+        this.faceName = card.faceName;
+    }
+
+    /**
+     * @return a copy of this card using the given name (eg. the Magarena spelling of the
+     * name) which also determines the script filename.
+     */
+    CardData withCardName(final String newCardName) {
+        return new CardData(this, newCardName);
+    }
+
+    /**
+     * Renders the ability, effect and oracle text from the card text the first time any of them is used.
+     */
+    private void renderText() {
+        if (isTextRendered) {
+            return;
+        }
+        synchronized (this) {
+            if (!isTextRendered) {
+                if (text != null) {
+                    final SelfReferences selfReferences = SelfReferences.of(textCardName, faceName, superType);
+                    if (type != null && (getType().contains("Instant") || getType().contains("Sorcery"))) {
+                        extractEffectText(selfReferences);
+                        extractAbilitiesFromEffects();
+                    } else {
+                        extractAbilityText(selfReferences);
+                    }
+                    extractOracleText();
+                }
+                isTextRendered = true;
             }
-            extractOracleText(jsonCard);
         }
     }
 
     private void extractAbilitiesFromEffects() {
-        effectToAbility(Pattern.compile("^Devoid~"));
-        effectToAbility(Pattern.compile("^Changeling~"));
-        effectToAbility(Pattern.compile("^Split second~"));
-        effectToAbility(Pattern.compile("Aftermath~"));
-        effectToAbility(Pattern.compile("As an additional cost to cast this spell, [^.]*\\.~"));
-        effectToAbility(Pattern.compile("This spell costs [^.]*\\.~"));
-        effectToAbility(Pattern.compile("Convoke~"));
-        effectToAbility(Pattern.compile("Delve~"));
-        effectToAbility(Pattern.compile("Buyback[^~]*~"));
-        effectToAbility(Pattern.compile("Kicker[^~]*~"));
-        effectToAbility(Pattern.compile("Surge[^~]*~"));
-        effectToAbility(Pattern.compile("Replicate[^~]*~"));
-        effectToAbility(Pattern.compile("Multikicker[^~]*~"));
-        effectToAbility(Pattern.compile("~Cycling.*"));
-        effectToAbility(Pattern.compile("~Basic landcycling.*"));
-        effectToAbility(Pattern.compile("~Flashback.*"));
-        effectToAbility(Pattern.compile("~Entwine.*"));
-        effectToAbility(Pattern.compile("~Conspire"));
-        effectToAbility(Pattern.compile("Madness[^~]*~"));
-        effectToAbility(Pattern.compile("~Madness[^~]*"));
-        effectToAbility(Pattern.compile("Cast this spell only [^.]*\\.~"));
-        effectToAbility(Pattern.compile("~Storm"));
-        effectToAbility(Pattern.compile("^Undaunted~"));
-        effectToAbility(Pattern.compile("~Miracle.*"));
-        effectToAbility(Pattern.compile("Haunt[^.]*\\.~"));
-        effectToAbility(Pattern.compile("~Haunt"));
-        effectToAbility(Pattern.compile("Cascade~"));
-        effectToAbility(Pattern.compile("Affinity for [^.]*\\.~"));
-        effectToAbility(Pattern.compile("~Awaken.*"));
-        effectToAbility(Pattern.compile("~Transmute.*"));
-        effectToAbility(Pattern.compile("~Retrace"));
-        effectToAbility(Pattern.compile("~Fuse"));
-        effectToAbility(Pattern.compile("Suspend[^~]*~"));
-        effectToAbility(Pattern.compile("~Suspend[^~]*"));
-        effectToAbility(Pattern.compile("~Overload.*"));
-        effectToAbility(Pattern.compile("~Reinforce.*"));
-        effectToAbility(Pattern.compile("^Affinity for [^~]*~"));
-        effectToAbility(Pattern.compile("Prowl[^~]*~"));
-        effectToAbility(Pattern.compile("~Splice onto Arcane.*"));
-        effectToAbility(Pattern.compile("^(You may [^.]*|If you control [^.]*) rather than pay this spell's mana cost\\.~"));
-        effectToAbility(Pattern.compile("^If [^.]*, you may [^.]* rather than pay this spell's mana cost\\.~"));
-        effectToAbility(Pattern.compile("This spell can't be countered\\.~"));
-    }
-
-    private void effectToAbility(Pattern pattern){
-        Matcher matcher = pattern.matcher(effectText);
-        if (matcher.find()) {
-            abilityText = (abilityText == null) ? matcher.group(0).replaceFirst("(^~|~(?!.))", "").replaceAll("~", ";\\\\\n        ") : abilityText + ";\\\n        " + matcher.group(0).replaceFirst("^~", "").replaceAll("~", ";\\\\\n        ");
-            effectText = pattern.matcher(effectText).replaceFirst("");
-        }
+        final KeywordAbilities abilities = KeywordAbilities.extract(effectText);
+        abilityText = abilities.getAbilityText();
+        effectText = abilities.getEffectText();
     }
 
-    private void extractAbilityText(final JsonObject json) {
-        abilityText = json.get("text").getAsString()
-                .replaceAll("^\\(.+?\\)\n", "")
-                .replaceAll("^[^I —]— ", "")
-                .replace("\n", ";\\\n        ")
-                .replace(";\\\n        •", " \\\n        •")
-                .replaceAll(" \\(.+?\\)", "")
-                .replaceFirst(" •", " (1)")
-                .replaceFirst(" •", " (2)")
-                .replaceFirst(" •", " (3)")
-                .replaceFirst(" •", " (4)")
-                .replaceAll("\n.+ — ", "\n        ")
-                .replace(cardName, "SN")
-                .replaceAll("named SN","named "+ cardName);
+    private void extractAbilityText(final SelfReferences selfReferences) {
+        abilityText = selfReferences.apply(ABILITY_TEXT_RULES.apply(text));
     }
 
     private void extractCardName(final JsonObject json) {
         cardName = json.get("name").getAsString();
     }
 
-    private void extractColor(final JsonObject json) {
+    private void extractColor(final JsonObject json, final SharedValues values) {
         if (json.has("colors") && !json.has("manaCost")) {
-            color = json.get("colors")
-                .toString()
-                .replace("Blue", "U")
-                .replaceAll("\\W", "")
-                .replaceAll("[a-z]", "")
-                .toLowerCase(Locale.ENGLISH);
+            color = values.share(COLOR_RULES.apply(json.get("colors").toString()).toLowerCase(Locale.ENGLISH));
         }
     }
 
-    private void extractEffectText(final JsonObject json) {
-        effectText = json.get("text").getAsString()
-            .replaceAll("^\\(.+?\\)\n", "")
-            .replaceAll("^.+— ", "")
-            .replace("\n", "~")
-            .replaceAll("~.+? — ", "~")
-            .replaceAll(" \\(.+?\\)", "")
-            .replaceAll("\n~•", "~•")
-            .replaceFirst("~•", " (1)")
-            .replaceFirst("~•", " (2)")
-            .replaceFirst("~•", " (3)")
-            .replaceFirst("~•", " (4)")
-            .replaceAll("\n.+ — ", "\n        ")
-            .replace(cardName, "SN")
-            .replaceAll("named SN", "named " + cardName);
-    }
-
-    private void extractImageUrl(final JsonObject json) {
-
-        if (json.has("number")) {
-            imageUrl = String.format(
-                "https://magiccards.info/scans/en/%s/%s.jpg",
-                setCode.toLowerCase(Locale.ENGLISH),
-                json.get("number").getAsString()
-            );
-            clearCardImageError(this);
-
-        } else if (json.has("mciNumber")) {
-            imageUrl = String.format(
-                    "https://magiccards.info/scans/en/%s/%s.jpg",
-                    setCode.toLowerCase(Locale.ENGLISH),
-                    json.get("mciNumber").getAsString()
-            );
-            clearCardImageError(this);
-
-        } else if (json.has("multiverseid")) {
-            imageUrl = setCode.toLowerCase(Locale.ENGLISH);
-            clearCardImageError(this);
+    private void extractEffectText(final SelfReferences selfReferences) {
+        effectText = selfReferences.apply(EFFECT_TEXT_RULES.apply(text));
+    }
 
+    private void extractImageUrl(final JsonObject json, final ImageUrlResolver.SetImageUrls imageUrls) {
+        final String url = imageUrls.getImageUrl(json);
+        if (url != null) {
+            imageUrl = url;
         } else {
-            addCardImageError(this, String.format("%s has no number or multiverseid - cannot set {image} property.", cardName));
+            imageError = String.format("%s has no number or multiverseid - cannot set {image} property.", cardName);
         }
-
     }
 
-    private void extractLoyalty(final JsonObject json) {
+    private void extractLoyalty(final JsonObject json, final SharedValues values) {
         if (json.has("loyalty")) {
-            loyalty = json.get("loyalty").getAsString();
+            loyalty = values.share(json.get("loyalty").getAsString());
         }
     }
 
-    private void extractManaCost(final JsonObject json) {
+    private void extractManaCost(final JsonObject json, final SharedValues values) {
         if (json.has("manaCost")) {
-            manaCost = json.get("manaCost").getAsString();
+            manaCost = values.share(json.get("manaCost").getAsString());
         }
     }
 
-    private void extractOracleText(final JsonObject json) {
-        if (json.has("text")) {
-            oracleText = json.get("text").getAsString()
-                .replaceAll("^\\(.+?\\)\n", "")
-                .replaceAll(" \\(.+?\\)", "")
-                .replaceAll("\n", "\\\\n")
-                .replaceAll(";", ",");
-        }
+    private void extractOracleText() {
+        oracleText = ORACLE_TEXT_RULES.apply(text);
     }
 
-    private void extractPower(final JsonObject json) {
+    private void extractPower(final JsonObject json, final SharedValues values) {
         if (json.has("power")) {
-            power = json.get("power").getAsString();
+            power = values.share(json.get("power").getAsString());
         }
     }
 
-    private void extractRarity(final JsonObject json) {
-        rarity = getRarity(json);
+    private void extractRarity(final JsonObject json, final SharedValues values) {
+        rarity = values.share(getRarity(json));
     }
 
-    private void extractSubTypes(final JsonObject json) {
+    private void extractSubTypes(final JsonObject json, final SharedValues values) {
         if (json.has("subtypes")) {
             JsonArray cardTypes = json.getAsJsonArray("subtypes");
             if (cardTypes.size() == 0) {
@@ -258,17 +390,13 @@ class CardData {
             StringBuilder sb = new StringBuilder();
             for (int j = 0; j < cardTypes.size(); j++) {
                 String subType = cardTypes.get(j).toString();
-                sb.append(subType
-                    .replace("\"", "")
-                    .replace(" ", "_")
-                    .replace("’s", "'s")
-                    .replace("-", "_")).append(",");
+                sb.append(SUBTYPE_RULES.apply(subType)).append(",");
             }
-            subTypes = sb.toString().substring(0, sb.toString().length() - 1);
+            subTypes = values.share(sb.toString().substring(0, sb.toString().length() - 1));
         }
     }
 
-    private void extractSuperTypes(final JsonObject json) {
+    private void extractSuperTypes(final JsonObject json, final SharedValues values) {
         if (json.has("supertypes")) {
             JsonArray cardTypes = json.getAsJsonArray("supertypes");
             if (cardTypes.size() == 0) {
@@ -276,30 +404,31 @@ class CardData {
             }
             StringBuilder sb = new StringBuilder();
             for (int j = 0; j < cardTypes.size(); j++) {
-                sb.append(cardTypes.get(j).toString().replace("\"", "")).append(",");
+                sb.append(StringUtils.remove(cardTypes.get(j).toString(), '"')).append(",");
             }
-            superType = sb.toString().substring(0, sb.toString().length() - 1);
+            superType = values.share(sb.toString().substring(0, sb.toString().length() - 1));
         }
     }
 
-    private void extractToughness(JsonObject json) {
+    private void extractToughness(final JsonObject json, final SharedValues values) {
         if (json.has("toughness")) {
-            toughness = json.get("toughness").getAsString();
+            toughness = values.share(json.get("toughness").getAsString());
         }
     }
 
-    private void extractTypes(JsonObject json) {
+    private void extractTypes(final JsonObject json, final SharedValues values) {
         if (json.has("types")) {
             StringBuilder sb = new StringBuilder();
             JsonArray cardTypes = json.getAsJsonArray("types");
             for (int j = 0; j < cardTypes.size(); j++) {
-                sb.append(cardTypes.get(j).toString().replace("\"", "")).append(",");
+                sb.append(StringUtils.remove(cardTypes.get(j).toString(), '"')).append(",");
             }
-            type = sb.toString().substring(0, sb.toString().length() - 1);
+            type = values.share(sb.toString().substring(0, sb.toString().length() - 1));
         }
     }
 
     public String getAbilityText() {
+        renderText();
         return abilityText;
     }
 
@@ -307,35 +436,37 @@ class CardData {
         return cardName;
     }
 
-    private String getCardNameAsAscii() {
-        return cardName
-            .replace("Æ", "_")
-            .replace("á", "_")
-            .replace("à", "_")
-            .replace("â", "_")
-            .replace("é", "_")
-            .replace("í", "_")
-            .replace("ö", "_")
-            .replace("ú", "_")
-            .replace("û", "_");
-    }
-
     public String getColor() {
         return color;
     }
 
     public String getEffectText() {
+        renderText();
         return effectText;
     }
 
     public String getFilename() {
-        return getCardNameAsAscii().replaceAll("[^A-Za-z0-9]", "_") + ".txt";
+        return getFilename(cardName);
+    }
+
+    /**
+     * @return the script filename for the given card name.
+     */
+    static String getFilename(final String cardName) {
+        return FILENAME_RULES.apply(ASCII_NAME_RULES.apply(cardName)) + ".txt";
     }
 
     public String getImageUrl() {
         return imageUrl;
     }
 
+    /**
+     * @return why the image url could not be set or null if there was no problem.
+     */
+    public String getImageError() {
+        return imageError;
+    }
+
     public String getLoyalty() {
         return loyalty;
     }
@@ -345,6 +476,7 @@ class CardData {
     }
 
     public String getOracleText() {
+        renderText();
         return oracleText;
     }
 
@@ -369,51 +501,21 @@ class CardData {
     }
 
     public String getTiming() {
-        if (hasAbilityText()) {
-            if (abilityText.contains("Flash") && !abilityText.contains("Flashback")) {
-                return "flash";
-            }
-            if (abilityText.contains("Storm")) {
-                return "storm";
-            }
-        }
-        if (type.contains("Instant")) {
-            if (hasEffectText()) {
-                if (effectText.contains("Counter")) {
-                    return "counter";
-                }
-            }
-            return "removal";
-        }
-        if (type.contains("Land")) {
-            return "land";
-        }
-        if (hasSubType()) {
-            if (subTypes.contains("Equipment")) {
-                return "equipment";
-            }
-            if (subTypes.contains("Aura")) {
-                return "aura";
-            }
-        }
-        if (type.contains("Creature")) {
-            if (hasAbilityText()) {
-                if (abilityText.contains("Haste") || abilityText.contains("Bolster") || abilityText.contains("Exalted")) {
-                    return "fmain";
-                }
-                if (abilityText.contains("Defender")) {
-                    return "smain";
-                }
-            }
-            return "main";
-        }
-        if (type.contains("Artifact")) {
-            return "artifact";
-        }
-        if (type.contains("Enchantment")) {
-            return "enchantment";
+        return getTiming(TimingRules.DEFAULT);
+    }
+
+    /**
+     * @return the timing given by the rules, the card features they use are only found
+     * the first time (and again if different rules are used).
+     */
+    public String getTiming(final TimingRules rules) {
+        TimingFeatures features = timingFeatures;
+        if (features == null || features.rules != rules) {
+            renderText();
+            features = new TimingFeatures(rules, rules.getFeatures(type, subTypes, abilityText, effectText));
+            timingFeatures = features;
         }
-        return "main";
+        return rules.getTiming(features.bits);
     }
 
     public String getToughness() {
@@ -425,7 +527,7 @@ class CardData {
     }
 
     public boolean hasAbilityText() {
-        return text != null && abilityText != null;
+        return text != null && getAbilityText() != null;
     }
 
     public boolean hasColor() {
@@ -433,7 +535,7 @@ class CardData {
     }
 
     public boolean hasEffectText() {
-        return text != null && effectText != null;
+        return text != null && getEffectText() != null;
     }
 
     public boolean hasLoyalty() {
@@ -456,7 +558,7 @@ class CardData {
         return subTypes != null;
     }
 
-    public void setText(String cardText) {
+    void setText(String cardText) {
         text = cardText;
     }
 
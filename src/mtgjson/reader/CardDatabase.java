@@ -0,0 +1,91 @@
+package mtgjson.reader;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * The cards extracted from the json feed, one per card name, and the set codes
+ * they were selected from. It does not change once loaded so the same instance
+ * can be shared between generator runs and threads.
+ */
+public final class CardDatabase {
+
+    private final SortedMap<String, String> sortedSetCodes;
+
+    // json card name -> card data, most recent printings first.
+    private final Map<String, CardData> cards;
+
+    // script filename -> default image url.
+    private final Map<String, String> imageLinks;
+
+    // card name -> image error.
+    private final SortedMap<String, String> imageErrors;
+
+    CardDatabase(final CardCache.Contents contents) {
+        final List<String> keys = contents.getKeys();
+        final List<CardData> cardList = contents.getCards();
+        final Map<String, CardData> cardMap = new LinkedHashMap<>(cardList.size() * 2);
+        final Map<String, String> links = new TreeMap<>();
+        final SortedMap<String, String> errors = new TreeMap<>();
+        for (int i = 0; i < cardList.size(); i++) {
+            final CardData card = cardList.get(i);
+            cardMap.put(keys.get(i), card);
+            links.put(card.getFilename(), card.getImageUrl());
+            if (card.getImageError() != null) {
+                errors.putIfAbsent(card.getCardName(), card.getImageError());
+            } else {
+                errors.remove(card.getCardName());
+            }
+        }
+        this.sortedSetCodes = Collections.unmodifiableSortedMap(contents.getSortedSetCodes());
+        this.cards = Collections.unmodifiableMap(cardMap);
+        this.imageLinks = Collections.unmodifiableMap(links);
+        this.imageErrors = Collections.unmodifiableSortedMap(errors);
+    }
+
+    /**
+     * @return every set code in the feed keyed by "release date + set code", most recent first.
+     */
+    public SortedMap<String, String> getSortedSetCodes() {
+        return sortedSetCodes;
+    }
+
+    public int size() {
+        return cards.size();
+    }
+
+    public Set<String> getCardNames() {
+        return cards.keySet();
+    }
+
+    public boolean hasCard(final String cardName) {
+        return cards.containsKey(cardName);
+    }
+
+    /**
+     * @return the most recent valid printing of the named card or null if there is none.
+     */
+    public CardData getCard(final String cardName) {
+        return cards.get(cardName);
+    }
+
+    /**
+     * @return the image url for the card with the given script filename or null if there is none.
+     */
+    public String getImageUrl(final String scriptFilename) {
+        return imageLinks.get(scriptFilename);
+    }
+
+    /**
+     * @return card name -> details for each card whose image url could not be set.
+     */
+    public SortedMap<String, String> getImageErrors() {
+        return imageErrors;
+    }
+
+}
@@ -0,0 +1,262 @@
+package mtgjson.reader;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Looks up card names which do not match exactly, eg. "Aether Burst" for "Æther Burst".
+ * <p>
+ * Names are first compared in a normalized form which ignores case, diacritics,
+ * ligatures, curly quotes, the spacing around "//" in split cards and repeated
+ * whitespace. Failing that, similar names can be found using an index of the three
+ * char sequences (trigrams) in the normalized names. A name within n edits of another
+ * shares all but 3n of its trigrams with it, so only the few names which share enough
+ * trigrams are compared in full. The names are numbered in order of length, so only the
+ * part of each trigram's list with names of about the same length is counted.
+ */
+final class CardNameIndex {
+
+    private static final TextRules NORMALIZE_RULES = TextRules.of(
+        TextRules.replaceAll("\\p{M}+", ""),
+        TextRules.replace("Æ", "Ae"),
+        TextRules.replace("æ", "ae"),
+        TextRules.replace("Œ", "Oe"),
+        TextRules.replace("œ", "oe"),
+        TextRules.replaceAll("[‘’`´]", "'"),
+        TextRules.replaceAll("[“”]", "\""),
+        TextRules.replaceAll("[‐‑–—]", "-"),
+        TextRules.replaceAll("\\s*/+\\s*", " // "),
+        TextRules.replaceAll("\\s+", " ")
+    );
+
+    private static final int GRAM_LENGTH = 3;
+
+    // added before and after a name so its first and last chars are in as many trigrams as the others.
+    private static final char GRAM_PADDING = '\0';
+
+    // normalized name -> card names.
+    private final Map<String, List<String>> normalizedNames = new HashMap<>();
+
+    // the normalized names by length, a name's index is its id in the trigram postings.
+    private final List<String> keys;
+
+    // per length, the id of the first key which is at least that long.
+    private final int[] lengthStart;
+
+    // trigram -> (key id << 8 | occurrences in the key) of each key with the trigram.
+    private final Map<Long, Postings> trigrams = new HashMap<>();
+
+    // per key id, the trigrams it has in common with the name being looked up (zero between lookups).
+    private final ThreadLocal<int[]> commonCounts;
+
+    CardNameIndex(final Collection<String> cardNames) {
+        for (String cardName : cardNames) {
+            final String key = normalize(cardName);
+            List<String> names = normalizedNames.get(key);
+            if (names == null) {
+                names = new ArrayList<>(1);
+                normalizedNames.put(key, names);
+            }
+            names.add(cardName);
+        }
+        keys = new ArrayList<>(normalizedNames.keySet());
+        keys.sort(Comparator.comparingInt(String::length).thenComparing(Comparator.naturalOrder()));
+        final int maxLength = keys.isEmpty() ? 0 : keys.get(keys.size() - 1).length();
+        lengthStart = new int[maxLength + 2];
+        for (String key : keys) {
+            lengthStart[key.length() + 1]++;
+        }
+        for (int length = 1; length < lengthStart.length; length++) {
+            lengthStart[length] += lengthStart[length - 1];
+        }
+        for (int id = 0; id < keys.size(); id++) {
+            addTrigrams(id);
+        }
+        commonCounts = ThreadLocal.withInitial(() -> new int[keys.size()]);
+    }
+
+    static String normalize(final String cardName) {
+        if (isPlainAscii(cardName)) {
+            return cardName.trim().toLowerCase(Locale.ENGLISH);
+        }
+        final String decomposed = Normalizer.normalize(cardName, Normalizer.Form.NFKD);
+        return NORMALIZE_RULES.apply(decomposed).trim().toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * @return true if the normalize rules would leave the name unchanged (printable
+     * ascii without backticks or slashes and no repeated spaces), which is most names.
+     */
+    private static boolean isPlainAscii(final String cardName) {
+        char previous = 0;
+        for (int i = 0; i < cardName.length(); i++) {
+            final char c = cardName.charAt(i);
+            if (c < ' ' || c > '~' || c == '`' || c == '/' || (c == ' ' && previous == ' ')) {
+                return false;
+            }
+            previous = c;
+        }
+        return true;
+    }
+
+    /**
+     * @return the only card name with the same normalized form or null if there is not exactly one.
+     */
+    String findNormalized(final String cardName) {
+        final List<String> names = normalizedNames.get(normalize(cardName));
+        return names != null && names.size() == 1 ? names.get(0) : null;
+    }
+
+    /**
+     * @return up to {@code limit} card names whose normalized form is the fewest edits
+     * (no more than {@code maxDistance}) from the normalized form of {@code cardName}.
+     */
+    List<String> findClosest(final String cardName, final int maxDistance, final int limit) {
+        final String target = normalize(cardName);
+
+        // only the keys which are no more than maxDistance longer or shorter.
+        final int first = getLengthStart(target.length() - maxDistance);
+        final int end = getLengthStart(target.length() + maxDistance + 1);
+
+        // trigrams in common with each key (counting repeated trigrams as often as both have them).
+        final int[] common = commonCounts.get();
+        for (Map.Entry<Long, Integer> gram : getTrigrams(target).entrySet()) {
+            final Postings postings = trigrams.get(gram.getKey());
+            if (postings == null) {
+                continue;
+            }
+            for (int i = postings.indexOf(first); i < postings.size; i++) {
+                final int entry = postings.entries[i];
+                final int id = entry >>> 8;
+                if (id >= end) {
+                    break;
+                }
+                common[id] += Math.min(gram.getValue(), entry & 0xff);
+            }
+        }
+
+        final TreeMap<Integer, List<String>> matches = new TreeMap<>();
+        for (int id = first; id < end; id++) {
+            final String key = keys.get(id);
+            if (common[id] < Math.max(key.length(), target.length()) + GRAM_LENGTH - 1 - GRAM_LENGTH * maxDistance) {
+                continue;
+            }
+            final int distance = editDistance(target, key, maxDistance);
+            if (distance <= maxDistance) {
+                matches.computeIfAbsent(distance, d -> new ArrayList<>()).add(key);
+            }
+        }
+        Arrays.fill(common, first, end, 0);
+        if (matches.isEmpty()) {
+            return Collections.emptyList();
+        }
+        final List<String> closest = matches.firstEntry().getValue();
+        Collections.sort(closest);
+        final List<String> names = new ArrayList<>();
+        for (String key : closest) {
+            names.addAll(normalizedNames.get(key));
+        }
+        return names.size() > limit ? names.subList(0, limit) : names;
+    }
+
+    /**
+     * @return the id of the first key which is at least {@code length} long.
+     */
+    private int getLengthStart(final int length) {
+        return lengthStart[Math.max(0, Math.min(length, lengthStart.length - 1))];
+    }
+
+    private void addTrigrams(final int id) {
+        for (Map.Entry<Long, Integer> gram : getTrigrams(keys.get(id)).entrySet()) {
+            trigrams.computeIfAbsent(gram.getKey(), g -> new Postings()).add(id << 8 | Math.min(gram.getValue(), 0xff));
+        }
+    }
+
+    /**
+     * @return each trigram of the padded text and the number of times it occurs.
+     */
+    private static Map<Long, Integer> getTrigrams(final String text) {
+        final Map<Long, Integer> grams = new HashMap<>();
+        final int padded = text.length() + 2 * (GRAM_LENGTH - 1);
+        for (int i = 0; i + GRAM_LENGTH <= padded; i++) {
+            long gram = 0;
+            for (int j = i; j < i + GRAM_LENGTH; j++) {
+                final int k = j - (GRAM_LENGTH - 1);
+                gram = gram << 16 | (k >= 0 && k < text.length() ? text.charAt(k) : GRAM_PADDING);
+            }
+            grams.merge(gram, 1, Integer::sum);
+        }
+        return grams;
+    }
+
+    /**
+     * The entries of the keys with a trigram, in order of key id.
+     */
+    private static final class Postings {
+
+        private int[] entries = new int[4];
+        private int size;
+
+        private void add(final int entry) {
+            if (size == entries.length) {
+                entries = Arrays.copyOf(entries, size * 2);
+            }
+            entries[size++] = entry;
+        }
+
+        /**
+         * @return the index of the first entry whose key id is at least {@code id}.
+         */
+        private int indexOf(final int id) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                final int middle = (low + high) >>> 1;
+                if (entries[middle] >>> 8 < id) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * @return the Levenshtein distance between two strings or {@code max + 1} if it is more than {@code max}.
+     */
+    static int editDistance(final String a, final String b, final int max) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = i;
+            for (int j = 1; j <= b.length(); j++) {
+                final int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            // the distance is never less than the smallest value in a row.
+            if (rowMin > max) {
+                return max + 1;
+            }
+            final int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return Math.min(previous[b.length()], max + 1);
+    }
+
+}
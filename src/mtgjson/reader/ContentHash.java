@@ -0,0 +1,37 @@
+package mtgjson.reader;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-1 content hashes as lower case hex strings.
+ */
+final class ContentHash {
+    private ContentHash() {}
+
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    static String of(final String text) {
+        return of(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String of(final byte[] bytes) {
+        return toHex(newDigest().digest(bytes));
+    }
+
+    static String toHex(final byte[] digest) {
+        final StringBuilder sb = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+}
@@ -1,16 +1,39 @@
 package mtgjson.reader;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.FileVisitResult;
+import java.nio.file.FileSystemException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 
 public final class FileSysUtil {
     private FileSysUtil() {}
 
+    // the directories being deleted in the background.
+    private static final Set<Path> DELETING = ConcurrentHashMap.newKeySet();
+
+    // the lock files locked by this JVM, a file lock is held by the whole JVM not by a thread.
+    private static final ConcurrentMap<Path, ReentrantLock> LOCKS = new ConcurrentHashMap<>();
+
     /**
      * Deletes all directory contents and then directory itself.
      */
@@ -34,4 +57,189 @@ public final class FileSysUtil {
         });
     }
 
+    /**
+     * Deletes a directory on a background thread. The files are deleted in parallel and
+     * then the directories, deepest first. The JVM does not exit until the delete is done,
+     * any error is printed and the rest of the directory is still deleted.
+     *
+     * @return completes once the directory has been deleted.
+     */
+    public static CompletableFuture<Void> deleteDirectoryInBackground(final Path root) {
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+        final Path folder = root.toAbsolutePath();
+        if (!DELETING.add(folder)) {
+            // already being deleted.
+            done.complete(null);
+            return done;
+        }
+        final Thread thread = new Thread(() -> {
+            try {
+                deleteDirectoryInParallel(folder);
+            } catch (IOException | RuntimeException ex) {
+                System.err.println(ex);
+            } finally {
+                DELETING.remove(folder);
+                done.complete(null);
+            }
+        }, "delete " + root.getFileName());
+        thread.start();
+        return done;
+    }
+
+    private static void deleteDirectoryInParallel(final Path root) throws IOException {
+        final List<Path> files = new ArrayList<>();
+        final List<Path> folders = new ArrayList<>();
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                files.add(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
+                if (exc instanceof NoSuchFileException) {
+                    // already deleted.
+                    return FileVisitResult.CONTINUE;
+                }
+                throw exc;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
+                folders.add(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        files.parallelStream().forEach(file -> {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ex) {
+                System.err.println(ex);
+            }
+        });
+        // post-order, so each folder is empty by the time it is reached.
+        for (Path folder : folders) {
+            Files.deleteIfExists(folder);
+        }
+    }
+
+    /**
+     * Deletes (in the background) any directories next to {@code target} whose name starts
+     * with one of the given prefixes, eg. left over by a run which did not complete.
+     */
+    public static void deleteSiblingsInBackground(final Path target, final String... prefixes) throws IOException {
+        final Path parent = target.toAbsolutePath().getParent();
+        try (final DirectoryStream<Path> siblings = Files.newDirectoryStream(parent)) {
+            for (Path sibling : siblings) {
+                final String name = sibling.getFileName().toString();
+                for (String prefix : prefixes) {
+                    if (name.startsWith(prefix) && Files.isDirectory(sibling)) {
+                        deleteDirectoryInBackground(sibling);
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies a directory and its contents as hard links to the same files, which is much
+     * cheaper than copying them. Any file which cannot be linked (eg. the file system does
+     * not support links) is copied instead. The files are linked in parallel.
+     * <p>
+     * A file in {@code target} must then be replaced (written to another file and moved)
+     * rather than written in place, otherwise the file in {@code source} changes as well.
+     */
+    public static void linkDirectory(final Path source, final Path target) throws IOException {
+        final List<Path> files = new ArrayList<>();
+        Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(target.resolve(source.relativize(dir)));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                files.add(file);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        try {
+            files.parallelStream().forEach(file -> {
+                final Path link = target.resolve(source.relativize(file));
+                try {
+                    try {
+                        Files.createLink(link, file);
+                    } catch (UnsupportedOperationException | FileSystemException ex) {
+                        Files.copy(file, link, StandardCopyOption.COPY_ATTRIBUTES);
+                    }
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    /**
+     * Locks the file (created if missing) until the returned lock is closed, waiting for any
+     * other thread or process which has it locked. The lock must be closed by the same thread.
+     */
+    public static Closeable lock(final Path lockFile) throws IOException {
+        final Path file = lockFile.toAbsolutePath();
+        final ReentrantLock threadLock = LOCKS.computeIfAbsent(file, f -> new ReentrantLock());
+        threadLock.lock();
+        try {
+            final FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            try {
+                final FileLock fileLock = channel.lock();
+                return () -> {
+                    try {
+                        fileLock.release();
+                        channel.close();
+                    } finally {
+                        threadLock.unlock();
+                    }
+                };
+            } catch (IOException | RuntimeException ex) {
+                channel.close();
+                throw ex;
+            }
+        } catch (IOException | RuntimeException ex) {
+            threadLock.unlock();
+            throw ex;
+        }
+    }
+
+    /**
+     * Renames a file or directory, atomically if the file system supports it.
+     */
+    public static void move(final Path source, final Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(source, target);
+        }
+    }
+
+    /**
+     * Replaces the {@code target} directory with {@code staging} by two renames (each atomic
+     * if the file system supports it), the previous target is moved to {@code previous}
+     * first. So {@code target} is never partly written, but it is missing between the two
+     * renames and if the process stops there the previous target is left at {@code previous}.
+     *
+     * @return true if there was a previous target, which is now at {@code previous}.
+     */
+    public static boolean swapDirectory(final Path staging, final Path target, final Path previous) throws IOException {
+        final boolean exists = Files.exists(target);
+        if (exists) {
+            move(target, previous);
+        }
+        move(staging, target);
+        return exists;
+    }
+
 }
@@ -0,0 +1,208 @@
+package mtgjson.reader;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Replaces the "image" property of existing script files, writing the updated
+ * scripts to another folder.
+ * <p>
+ * Each script is read in a single call and only the bytes of the image line are
+ * replaced, the rest of the script is copied as is. Scripts which do not use unix
+ * style line endings are rewritten line by line instead so that the output always
+ * does. Scripts whose image is already correct are not written. The scripts are
+ * processed in parallel but the results are reported in the given order.
+ */
+final class ImageLinkUpdater {
+
+    private static final byte[] IMAGE_PROPERTY = "image=".getBytes(StandardCharsets.UTF_8);
+
+    enum Status {
+        UPDATED,
+        UNCHANGED,
+        // no image url is known for the script.
+        SKIPPED,
+        FAILED
+    }
+
+    private final Path outputFolder;
+    private final int threads;
+
+    // script filename -> image url, or null if it is unknown.
+    private final Function<String, String> imageUrls;
+
+    // optional, the metrics phase the updater threads are counted in.
+    private RunMetrics.Phase phase;
+
+    ImageLinkUpdater(final Path outputFolder, final int threads, final Function<String, String> imageUrls) {
+        this.outputFolder = outputFolder;
+        this.threads = Math.max(1, threads);
+        this.imageUrls = imageUrls;
+    }
+
+    /**
+     * Adds the CPU time and allocations of the updater threads to the given metrics phase.
+     */
+    ImageLinkUpdater trackedBy(final RunMetrics.Phase metricsPhase) {
+        this.phase = metricsPhase;
+        return this;
+    }
+
+    /**
+     * Updates each script, returning the status of each in the same order.
+     */
+    List<Status> update(final List<Path> scriptFiles) {
+        final Status[] results = new Status[scriptFiles.size()];
+        if (threads == 1 || scriptFiles.size() < threads) {
+            for (int i = 0; i < results.length; i++) {
+                results[i] = update(scriptFiles.get(i));
+            }
+            return Arrays.asList(results);
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<?>> tasks = new ArrayList<>(scriptFiles.size());
+            for (int i = 0; i < results.length; i++) {
+                final int index = i;
+                final Runnable task = () -> results[index] = update(scriptFiles.get(index));
+                tasks.add(executor.submit(phase != null ? phase.track(task) : task));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException(e);
+        } finally {
+            executor.shutdown();
+        }
+        return Arrays.asList(results);
+    }
+
+    private Status update(final Path scriptFile) {
+        try {
+            final String scriptFilename = scriptFile.getFileName().toString();
+            final String imageUrl = imageUrls.apply(scriptFilename);
+            if (imageUrl == null) {
+                return Status.SKIPPED;
+            }
+            final byte[] script = Files.readAllBytes(scriptFile);
+            final byte[] updated = replaceImageLink(script, imageUrl);
+            if (Arrays.equals(script, updated)) {
+                return Status.UNCHANGED;
+            }
+            Files.write(outputFolder.resolve(scriptFilename), updated);
+            return Status.UPDATED;
+        } catch (IOException | RuntimeException ex) {
+            System.err.println(ex);
+            return Status.FAILED;
+        }
+    }
+
+    /**
+     * @return the script with the value of every image property set to {@code imageUrl}.
+     */
+    static byte[] replaceImageLink(final byte[] script, final String imageUrl) throws IOException {
+        if (!hasUnixLineEndings(script)) {
+            return replaceImageLinkByLine(script, imageUrl);
+        }
+        final byte[] url = imageUrl.getBytes(StandardCharsets.UTF_8);
+        final ByteBufferBuilder out = new ByteBufferBuilder(script.length + url.length);
+        int copied = 0;
+        for (int start = 0; start < script.length; start = lineEnd(script, start) + 1) {
+            if (startsWith(script, start, IMAGE_PROPERTY)) {
+                final int valueStart = start + IMAGE_PROPERTY.length;
+                out.append(script, copied, valueStart - copied).append(url, 0, url.length);
+                copied = lineEnd(script, valueStart);
+            }
+        }
+        return out.append(script, copied, script.length - copied).toByteArray();
+    }
+
+    /**
+     * Rewrites the script a line at a time, used when it has windows style line
+     * endings or is missing the final line ending.
+     */
+    private static byte[] replaceImageLinkByLine(final byte[] script, final String imageUrl) throws IOException {
+        final StringBuilder sb = new StringBuilder(script.length + imageUrl.length());
+        try (final BufferedReader reader = new BufferedReader(new StringReader(new String(script, StandardCharsets.UTF_8)))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("image=")) {
+                    sb.append("image=").append(imageUrl).append('\n');
+                } else {
+                    sb.append(line).append('\n');
+                }
+            }
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static boolean hasUnixLineEndings(final byte[] script) {
+        for (byte b : script) {
+            if (b == '\r') {
+                return false;
+            }
+        }
+        return script.length == 0 || script[script.length - 1] == '\n';
+    }
+
+    private static int lineEnd(final byte[] script, final int from) {
+        for (int i = from; i < script.length; i++) {
+            if (script[i] == '\n') {
+                return i;
+            }
+        }
+        return script.length;
+    }
+
+    private static boolean startsWith(final byte[] script, final int offset, final byte[] prefix) {
+        if (script.length - offset < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (script[offset + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Minimal growable byte array which, unlike ByteArrayOutputStream, is not synchronized.
+     */
+    private static final class ByteBufferBuilder {
+
+        private byte[] bytes;
+        private int size;
+
+        private ByteBufferBuilder(final int capacity) {
+            bytes = new byte[Math.max(16, capacity)];
+        }
+
+        private ByteBufferBuilder append(final byte[] source, final int offset, final int length) {
+            if (size + length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + length));
+            }
+            System.arraycopy(source, offset, bytes, size, length);
+            size += length;
+            return this;
+        }
+
+        private byte[] toByteArray() {
+            return size == bytes.length ? bytes : Arrays.copyOf(bytes, size);
+        }
+    }
+
+}
@@ -0,0 +1,337 @@
+package mtgjson.reader;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Properties;
+
+/**
+ * Script filename -> image url, for the predefined image links which override the
+ * links generated from the json feed.
+ * <p>
+ * Once read from a source file the links are saved to a binary index, sorted by script
+ * filename, which is memory mapped and searched for each lookup. The index is used instead
+ * of the source file while the file has the same size and modified time. The links are
+ * held in an open addressing hash table while they are read and if the index cannot be
+ * saved. Neither lookup locks and the only allocation is the returned url.
+ * <p>
+ * Links may be added from a single thread before the store is shared, after which
+ * it must only be read.
+ */
+final class ImageOverrides {
+
+    private static final int MAGIC = 0x4D4A494F; // "MJIO"
+
+    // increment whenever the index layout changes.
+    private static final int VERSION = 2;
+
+    // magic, version, source size, source modified time and number of links.
+    private static final int HEADER_SIZE = 28;
+
+    /**
+     * Reads the links from a source file.
+     */
+    interface Source {
+        void readInto(ImageOverrides links, Path file) throws IOException;
+    }
+
+    /**
+     * Reads a file in the {@link Properties} format, eg. CardImages.txt.
+     */
+    static final Source PROPERTIES_FILE = ImageOverrides::readProperties;
+
+    private String[] keys = new String[16];
+    private String[] values = new String[16];
+    private int size;
+
+    // the mapped index or null if the links are in the hash table. The index is only read
+    // with absolute gets so it can be shared by threads. After the header it holds the
+    // offset of each entry in script filename order, then the entries each as the length
+    // and chars of the script filename followed by the length and chars of the url.
+    private ByteBuffer index;
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the image url for the given script filename or null if there is none.
+     */
+    String get(final String scriptFilename) {
+        if (index != null) {
+            return getFromIndex(scriptFilename);
+        }
+        final int mask = keys.length - 1;
+        int i = indexFor(scriptFilename, mask);
+        String key;
+        while ((key = keys[i]) != null) {
+            if (key.equals(scriptFilename)) {
+                return values[i];
+            }
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    void put(final String scriptFilename, final String imageUrl) {
+        if ((size + 1) * 4 > keys.length * 3) {
+            resize(keys.length * 2);
+        }
+        final int mask = keys.length - 1;
+        int i = indexFor(scriptFilename, mask);
+        String key;
+        while ((key = keys[i]) != null) {
+            if (key.equals(scriptFilename)) {
+                values[i] = imageUrl;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = scriptFilename;
+        values[i] = imageUrl;
+        size++;
+    }
+
+    private void resize(final int capacity) {
+        final String[] oldKeys = keys;
+        final String[] oldValues = values;
+        keys = new String[capacity];
+        values = new String[capacity];
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private static int indexFor(final String key, final int mask) {
+        final int h = key.hashCode();
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /**
+     * Binary search of the entries in the mapped index.
+     */
+    private String getFromIndex(final String scriptFilename) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int entry = index.getInt(HEADER_SIZE + mid * 4);
+            final int cmp = compareKey(entry, scriptFilename);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                final int value = entry + 4 + index.getInt(entry) * 2;
+                final char[] chars = new char[index.getInt(value)];
+                for (int i = 0; i < chars.length; i++) {
+                    chars[i] = index.getChar(value + 4 + i * 2);
+                }
+                return new String(chars);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Compares the script filename of the entry at {@code entry} with {@code key} as {@link String#compareTo} does.
+     */
+    private int compareKey(final int entry, final String key) {
+        final int length = index.getInt(entry);
+        final int n = Math.min(length, key.length());
+        for (int i = 0; i < n; i++) {
+            final char c = index.getChar(entry + 4 + i * 2);
+            if (c != key.charAt(i)) {
+                return c - key.charAt(i);
+            }
+        }
+        return length - key.length();
+    }
+
+    /**
+     * @return the links read from {@code sourceFile}, using {@code indexFile} if it is up to date
+     * and otherwise updating it.
+     */
+    static ImageOverrides load(final Path sourceFile, final Path indexFile, final Source source) throws IOException {
+        final long sourceSize = Files.size(sourceFile);
+        final long sourceModified = Files.getLastModifiedTime(sourceFile).toMillis();
+
+        final ImageOverrides indexed = readIndex(indexFile, sourceSize, sourceModified);
+        if (indexed != null) {
+            return indexed;
+        }
+
+        final ImageOverrides links = new ImageOverrides();
+        source.readInto(links, sourceFile);
+        try {
+            links.saveIndex(indexFile, sourceSize, sourceModified);
+        } catch (IOException ex) {
+            System.err.println(ex);
+            return links;
+        }
+        final ImageOverrides saved = readIndex(indexFile, sourceSize, sourceModified);
+        return saved != null ? saved : links;
+    }
+
+    private static ImageOverrides readIndex(final Path indexFile, final long sourceSize, final long sourceModified) throws IOException {
+        if (!Files.isRegularFile(indexFile)) {
+            return null;
+        }
+        try (final FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+                return null;
+            }
+            // the mapping stays valid once the channel is closed.
+            final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION
+                    || buffer.getLong() != sourceSize || buffer.getLong() != sourceModified) {
+                return null;
+            }
+            final int count = buffer.getInt();
+            if (count < 0 || count > (buffer.limit() - HEADER_SIZE) / 4 || !isComplete(buffer, count)) {
+                return null;
+            }
+            final ImageOverrides links = new ImageOverrides();
+            links.index = buffer;
+            links.size = count;
+            return links;
+        }
+    }
+
+    /**
+     * @return true if the last entry of the index ends at the end of the file, ie. the file is not truncated.
+     */
+    private static boolean isComplete(final ByteBuffer buffer, final int count) {
+        long end = HEADER_SIZE + count * 4L;
+        if (count > 0) {
+            final int last = buffer.getInt(HEADER_SIZE + (count - 1) * 4);
+            if (last < end || last > buffer.limit() - 4) {
+                return false;
+            }
+            final long value = last + 4 + buffer.getInt(last) * 2L;
+            if (value < last + 4 || value > buffer.limit() - 4) {
+                return false;
+            }
+            end = value + 4 + buffer.getInt((int) value) * 2L;
+        }
+        return end == buffer.limit();
+    }
+
+    /**
+     * Saves the links sorted by script filename. The index is written to a temporary
+     * file first so an interrupted save is never used.
+     */
+    private void saveIndex(final Path indexFile, final long sourceSize, final long sourceModified) throws IOException {
+        final String[] sortedKeys = new String[size];
+        int n = 0;
+        for (String key : keys) {
+            if (key != null) {
+                sortedKeys[n++] = key;
+            }
+        }
+        Arrays.sort(sortedKeys);
+        final Path tempFile = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+        try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(sourceSize);
+            out.writeLong(sourceModified);
+            out.writeInt(sortedKeys.length);
+            long offset = HEADER_SIZE + sortedKeys.length * 4L;
+            for (String key : sortedKeys) {
+                if (offset > Integer.MAX_VALUE) {
+                    throw new IOException("Too many image links to index: " + size);
+                }
+                out.writeInt((int) offset);
+                offset += 8 + (key.length() + get(key).length()) * 2L;
+            }
+            for (String key : sortedKeys) {
+                writeChars(out, key);
+                writeChars(out, get(key));
+            }
+        }
+        Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static void writeChars(final DataOutputStream out, final String value) throws IOException {
+        out.writeInt(value.length());
+        out.writeChars(value);
+    }
+
+    /**
+     * Reads a properties file line by line. Files using escapes or line continuations
+     * (neither of which occur in generated files) are read by {@link Properties} instead.
+     */
+    private static void readProperties(final ImageOverrides links, final Path file) throws IOException {
+        final byte[] bytes = Files.readAllBytes(file);
+        final String text = new String(bytes, StandardCharsets.ISO_8859_1);
+        if (text.indexOf('\\') >= 0) {
+            final Properties prop = new Properties();
+            try (final InputStream in = Files.newInputStream(file)) {
+                prop.load(in);
+            }
+            for (final String scriptName : prop.stringPropertyNames()) {
+                links.put(scriptName, prop.getProperty(scriptName));
+            }
+            return;
+        }
+
+        int start = 0;
+        while (start < text.length()) {
+            int end = start;
+            while (end < text.length() && text.charAt(end) != '\n' && text.charAt(end) != '\r') {
+                end++;
+            }
+            readProperty(links, text, start, end);
+            start = end + 1;
+        }
+    }
+
+    /**
+     * Reads a single "key=value" (or "key:value" or "key value") line, as {@link Properties#load} does.
+     */
+    private static void readProperty(final ImageOverrides links, final String text, final int start, final int end) {
+        int i = skipWhitespace(text, start, end);
+        if (i == end || text.charAt(i) == '#' || text.charAt(i) == '!') {
+            return;
+        }
+        final int keyStart = i;
+        while (i < end && !isSeparator(text.charAt(i)) && !isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        final int keyEnd = i;
+        i = skipWhitespace(text, i, end);
+        if (i < end && isSeparator(text.charAt(i))) {
+            i = skipWhitespace(text, i + 1, end);
+        }
+        links.put(text.substring(keyStart, keyEnd), text.substring(i, end));
+    }
+
+    private static int skipWhitespace(final String text, int i, final int end) {
+        while (i < end && isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isSeparator(final char c) {
+        return c == '=' || c == ':';
+    }
+
+    private static boolean isWhitespace(final char c) {
+        return c == ' ' || c == '\t' || c == '\f';
+    }
+
+}
@@ -0,0 +1,66 @@
+package mtgjson.reader;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+/**
+ * Asks each {@link ImageUrlResolver} in turn for the image url of a card. The resolvers
+ * which have images for a set are only worked out the first time the set is used.
+ */
+final class ImageUrlChain implements ImageUrlResolver {
+
+    // used for the sets which no resolver has images for.
+    private static final SetImageUrls NONE = card -> null;
+
+    private final List<ImageUrlResolver> resolvers;
+
+    // json set code -> image urls of the cards in the set.
+    private final ConcurrentMap<String, SetImageUrls> sets = new ConcurrentHashMap<>();
+
+    ImageUrlChain(final List<ImageUrlResolver> resolvers) {
+        this.resolvers = new ArrayList<>(resolvers);
+    }
+
+    @Override
+    public SetImageUrls forSet(final String jsonSetCode, final String setCode) {
+        return sets.computeIfAbsent(jsonSetCode, key -> compile(jsonSetCode, setCode));
+    }
+
+    private SetImageUrls compile(final String jsonSetCode, final String setCode) {
+        final List<SetImageUrls> setUrls = new ArrayList<>(resolvers.size());
+        for (ImageUrlResolver resolver : resolvers) {
+            final SetImageUrls urls = resolver.forSet(jsonSetCode, setCode);
+            if (urls != null) {
+                setUrls.add(urls);
+            }
+        }
+        if (setUrls.isEmpty()) {
+            return NONE;
+        }
+        if (setUrls.size() == 1) {
+            return setUrls.get(0);
+        }
+        final SetImageUrls[] chain = setUrls.toArray(new SetImageUrls[0]);
+        return card -> {
+            for (SetImageUrls urls : chain) {
+                final String imageUrl = urls.getImageUrl(card);
+                if (imageUrl != null) {
+                    return imageUrl;
+                }
+            }
+            return null;
+        };
+    }
+
+    /**
+     * Identifies the resolvers, which is part of the card cache key since the cache holds the image urls.
+     */
+    @Override
+    public String toString() {
+        return resolvers.stream().map(Object::toString).collect(Collectors.joining(","));
+    }
+
+}
@@ -0,0 +1,96 @@
+package mtgjson.reader;
+
+import com.google.gson.JsonObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Links the cards in the json feed to their images on an image host.
+ * <p>
+ * The generator asks each resolver in its chain (see {@link ScriptGenerator.Builder#imageUrls})
+ * for the image url of a card in turn and uses the first url given. A resolver is asked
+ * once per set for the urls of the cards in the set so anything which only depends on the
+ * set (eg. the set code used by the host) is worked out once rather than for every card.
+ * Resolvers are used by several threads at once.
+ */
+public interface ImageUrlResolver {
+
+    // The chain used unless another is given, see parseChain.
+    String DEFAULT_CHAIN = "magiccards";
+
+    /**
+     * The image urls of the cards in a single set.
+     */
+    interface SetImageUrls {
+
+        /**
+         * @return the image url of a json card (see {@link CardData#JSON_FIELDS}) or null
+         * if the host has no image for it.
+         */
+        String getImageUrl(JsonObject card);
+    }
+
+    /**
+     * @param jsonSetCode the set code used by the json feed.
+     * @param setCode the magiccards.info set code, which is usually the same.
+     * @return the image urls of the cards in the set or null if the host has no images for the set.
+     */
+    SetImageUrls forSet(String jsonSetCode, String setCode);
+
+    /**
+     * Cards linked to https://magiccards.info by collector number (or their magiccards.info
+     * number). Cards with neither are given the set code.
+     */
+    static ImageUrlResolver magicCardsInfo() {
+        return MagicCardsInfoImages.INSTANCE;
+    }
+
+    /**
+     * Cards linked to https://scryfall.com by set code and collector number.
+     */
+    static ImageUrlResolver scryfall() {
+        return new ImageUrlTemplate("https://api.scryfall.com/cards/{set}/{number}?format=image");
+    }
+
+    /**
+     * Cards linked to https://gatherer.wizards.com by multiverse id.
+     */
+    static ImageUrlResolver multiverse() {
+        return new ImageUrlTemplate("https://gatherer.wizards.com/Handlers/Image.ashx?multiverseid={multiverseid}&type=card");
+    }
+
+    /**
+     * @param chain comma separated resolvers in the order they are asked, each either
+     * "magiccards", "scryfall", "multiverse" or an {@link ImageUrlTemplate}.
+     */
+    static List<ImageUrlResolver> parseChain(final String chain) {
+        final List<ImageUrlResolver> resolvers = new ArrayList<>();
+        for (String name : chain.split(",")) {
+            name = name.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            switch (name) {
+                case "magiccards":
+                    resolvers.add(magicCardsInfo());
+                    break;
+                case "scryfall":
+                    resolvers.add(scryfall());
+                    break;
+                case "multiverse":
+                    resolvers.add(multiverse());
+                    break;
+                default:
+                    if (!name.contains("{")) {
+                        throw new IllegalArgumentException("Unknown image url resolver: " + name);
+                    }
+                    resolvers.add(new ImageUrlTemplate(name));
+                    break;
+            }
+        }
+        return Collections.unmodifiableList(resolvers);
+    }
+
+}
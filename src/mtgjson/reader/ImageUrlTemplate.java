@@ -0,0 +1,125 @@
+package mtgjson.reader;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * An image url built from a template such as
+ * {@code "https://api.scryfall.com/cards/{set}/{number}?format=image"}.
+ * <p>
+ * {@code {set}} is replaced by the json set code and {@code {mciset}} by the magiccards.info
+ * set code (both in lower case) when the template is compiled for a set. {@code {number}},
+ * {@code {mciNumber}} and {@code {multiverseid}} are replaced by the json card field of the
+ * same name, a card without one of the fields used by the template is not linked.
+ */
+public final class ImageUrlTemplate implements ImageUrlResolver {
+
+    // placeholders replaced once per set.
+    private static final String SET = "set";
+    private static final String MCI_SET = "mciset";
+
+    // placeholders replaced by the json card field of the same name.
+    private static final List<String> CARD_FIELDS = Arrays.asList("number", "mciNumber", "multiverseid");
+
+    private final String template;
+
+    // the template split into literal text and placeholder names,
+    // literals[i] is followed by placeholders[i].
+    private final String[] literals;
+    private final String[] placeholders;
+
+    public ImageUrlTemplate(final String template) {
+        this.template = template;
+        final List<String> literalList = new ArrayList<>();
+        final List<String> placeholderList = new ArrayList<>();
+        int start = 0;
+        int open;
+        while ((open = template.indexOf('{', start)) >= 0) {
+            final int close = template.indexOf('}', open);
+            if (close < 0) {
+                throw new IllegalArgumentException("Unclosed placeholder in image url template: " + template);
+            }
+            final String placeholder = template.substring(open + 1, close);
+            if (!SET.equals(placeholder) && !MCI_SET.equals(placeholder) && !CARD_FIELDS.contains(placeholder)) {
+                throw new IllegalArgumentException("Unknown placeholder {" + placeholder + "} in image url template: " + template);
+            }
+            literalList.add(template.substring(start, open));
+            placeholderList.add(placeholder);
+            start = close + 1;
+        }
+        literalList.add(template.substring(start));
+        this.literals = literalList.toArray(new String[0]);
+        this.placeholders = placeholderList.toArray(new String[0]);
+    }
+
+    /**
+     * Replaces the set placeholders so that only the card fields are left to fill in for each card.
+     */
+    @Override
+    public SetImageUrls forSet(final String jsonSetCode, final String setCode) {
+        final List<String> setLiterals = new ArrayList<>();
+        final List<String> setFields = new ArrayList<>();
+        final StringBuilder literal = new StringBuilder(literals[0]);
+        for (int i = 0; i < placeholders.length; i++) {
+            if (SET.equals(placeholders[i])) {
+                literal.append(jsonSetCode.toLowerCase(Locale.ENGLISH));
+            } else if (MCI_SET.equals(placeholders[i])) {
+                literal.append(setCode.toLowerCase(Locale.ENGLISH));
+            } else {
+                setLiterals.add(literal.toString());
+                setFields.add(placeholders[i]);
+                literal.setLength(0);
+            }
+            literal.append(literals[i + 1]);
+        }
+        setLiterals.add(literal.toString());
+        return new CompiledUrls(setLiterals.toArray(new String[0]), setFields.toArray(new String[0]));
+    }
+
+    @Override
+    public String toString() {
+        return template;
+    }
+
+    /**
+     * The template for a single set, fields[i] follows literals[i].
+     */
+    private static final class CompiledUrls implements SetImageUrls {
+
+        private final String[] literals;
+        private final String[] fields;
+        private final int length;
+
+        private CompiledUrls(String[] literals, String[] fields) {
+            this.literals = literals;
+            this.fields = fields;
+            int n = 0;
+            for (String literal : literals) {
+                n += literal.length();
+            }
+            this.length = n;
+        }
+
+        @Override
+        public String getImageUrl(final JsonObject card) {
+            if (fields.length == 0) {
+                return literals[0];
+            }
+            final StringBuilder sb = new StringBuilder(length + 8 * fields.length);
+            for (int i = 0; i < fields.length; i++) {
+                final JsonElement value = card.get(fields[i]);
+                if (value == null || value.isJsonNull()) {
+                    return null;
+                }
+                sb.append(literals[i]).append(value.getAsString());
+            }
+            return sb.append(literals[fields.length]).toString();
+        }
+    }
+
+}
@@ -0,0 +1,122 @@
+package mtgjson.reader;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * Watches the input folder of a {@link ScriptGenerator} and updates its output
+ * whenever an input changes, only repeating the stages which depend on it.
+ * <p>
+ * Changes are collected until the folder has been quiet for {@link #QUIET_MILLIS}
+ * so that a file being copied or saved in several writes triggers a single update.
+ */
+final class InputWatcher {
+
+    // How long to wait for further changes before updating the output.
+    private static final long QUIET_MILLIS = 500;
+
+    private final ScriptGenerator generator;
+    private final Path inputFolder;
+    private final Path invalidImageScriptsFolder;
+    private final PrintStream log;
+
+    InputWatcher(final ScriptGenerator generator, final Path inputFolder, final PrintStream log) {
+        this.generator = generator;
+        this.inputFolder = inputFolder;
+        this.invalidImageScriptsFolder = inputFolder.resolve(ScriptGenerator.Input.INVALID_IMAGE_SCRIPTS_FOLDER.getFilename());
+        this.log = log;
+    }
+
+    /**
+     * Watches until the current thread is interrupted. The output is not
+     * generated first, call {@link ScriptGenerator#generate} beforehand.
+     */
+    void run() throws IOException, InterruptedException {
+        try (final WatchService watcher = FileSystems.getDefault().newWatchService()) {
+            final WatchKey inputKey = register(watcher, inputFolder);
+            WatchKey scriptsKey = Files.isDirectory(invalidImageScriptsFolder)
+                    ? register(watcher, invalidImageScriptsFolder)
+                    : null;
+
+            log.printf("Watching \"%s\" for changes (Ctrl+C to stop)...\n", inputFolder);
+
+            while (true) {
+                final Set<ScriptGenerator.Input> changedInputs = EnumSet.noneOf(ScriptGenerator.Input.class);
+                WatchKey key = watcher.take();
+                while (key != null) {
+                    if (key == inputKey) {
+                        for (WatchEvent<?> event : key.pollEvents()) {
+                            if (event.kind() == OVERFLOW) {
+                                changedInputs.addAll(Arrays.asList(ScriptGenerator.Input.values()));
+                            } else {
+                                final ScriptGenerator.Input input =
+                                        ScriptGenerator.Input.forFilename(event.context().toString());
+                                if (input != null) {
+                                    changedInputs.add(input);
+                                }
+                            }
+                        }
+                    } else {
+                        // any change to a script in the folder.
+                        key.pollEvents();
+                        changedInputs.add(ScriptGenerator.Input.INVALID_IMAGE_SCRIPTS_FOLDER);
+                    }
+                    if (!key.reset() && key == inputKey) {
+                        log.printf("-> \"%s\" is no longer accessible, stopped watching.\n", inputFolder);
+                        return;
+                    }
+                    key = watcher.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS);
+                }
+
+                // the scripts folder may have been created, deleted or replaced.
+                if (changedInputs.contains(ScriptGenerator.Input.INVALID_IMAGE_SCRIPTS_FOLDER)) {
+                    if (scriptsKey != null) {
+                        scriptsKey.cancel();
+                    }
+                    scriptsKey = Files.isDirectory(invalidImageScriptsFolder)
+                            ? register(watcher, invalidImageScriptsFolder)
+                            : null;
+                }
+
+                if (!changedInputs.isEmpty()) {
+                    update(changedInputs);
+                }
+            }
+        } catch (ClosedWatchServiceException ex) {
+            // stopped.
+        }
+    }
+
+    private void update(final Set<ScriptGenerator.Input> changedInputs) {
+        log.printf("\nInput changed %s, updating...\n", changedInputs);
+        final long start_time = System.nanoTime();
+        try {
+            generator.update(changedInputs);
+            log.printf("Updated in %.0f ms.\n", (System.nanoTime() - start_time) / 1e6);
+        } catch (IOException | RuntimeException ex) {
+            // eg. an input file was read while it was still being written, it will be retried on the next change.
+            System.err.println(ex);
+        }
+    }
+
+    private static WatchKey register(final WatchService watcher, final Path folder) throws IOException {
+        return folder.register(watcher, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+    }
+
+}
@@ -0,0 +1,181 @@
+package mtgjson.reader;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Moves keyword abilities (Kicker, Flashback, Cycling, Convoke, etc) out of the
+ * effect text of an instant or sorcery and into its ability text.
+ * <p>
+ * Each rule is a regex plus a literal keyword which must be present for the regex
+ * to match. The effect text is scanned once for all keywords using a single
+ * alternation and only the rules whose keyword was found are run, in table order,
+ * so a card with no keyword abilities costs one scan of its text. The result is
+ * the same as trying every rule in turn.
+ */
+final class KeywordAbilities {
+
+    private static final String ABILITY_SEPARATOR = ";\\\n        ";
+
+    static final class Rule {
+
+        final String keyword;
+        final String regex;
+        private final ThreadLocal<Matcher> matcher;
+
+        private Rule(String keyword, String regex) {
+            this.keyword = keyword;
+            this.regex = regex;
+            this.matcher = TextRules.newMatcher(regex);
+        }
+    }
+
+    private static final String ALTERNATIVE_COST = " rather than pay this spell's mana cost.";
+
+    // Each rule is tried in turn against what is left of the effect text.
+    private static final List<Rule> RULES = Collections.unmodifiableList(Arrays.asList(
+        new Rule("Devoid", "^Devoid~"),
+        new Rule("Changeling", "^Changeling~"),
+        new Rule("Split second", "^Split second~"),
+        new Rule("Aftermath", "Aftermath~"),
+        new Rule("As an additional cost to cast this spell, ", "As an additional cost to cast this spell, [^.]*\\.~"),
+        new Rule("This spell costs ", "This spell costs [^.]*\\.~"),
+        new Rule("Convoke", "Convoke~"),
+        new Rule("Delve", "Delve~"),
+        new Rule("Buyback", "Buyback[^~]*~"),
+        new Rule("Kicker", "Kicker[^~]*~"),
+        new Rule("Surge", "Surge[^~]*~"),
+        new Rule("Replicate", "Replicate[^~]*~"),
+        new Rule("Multikicker", "Multikicker[^~]*~"),
+        new Rule("Cycling", "~Cycling.*"),
+        new Rule("Basic landcycling", "~Basic landcycling.*"),
+        new Rule("Flashback", "~Flashback.*"),
+        new Rule("Entwine", "~Entwine.*"),
+        new Rule("Conspire", "~Conspire"),
+        new Rule("Madness", "Madness[^~]*~"),
+        new Rule("Madness", "~Madness[^~]*"),
+        new Rule("Cast this spell only ", "Cast this spell only [^.]*\\.~"),
+        new Rule("Storm", "~Storm"),
+        new Rule("Undaunted", "^Undaunted~"),
+        new Rule("Miracle", "~Miracle.*"),
+        new Rule("Haunt", "Haunt[^.]*\\.~"),
+        new Rule("Haunt", "~Haunt"),
+        new Rule("Cascade", "Cascade~"),
+        new Rule("Affinity for ", "Affinity for [^.]*\\.~"),
+        new Rule("Awaken", "~Awaken.*"),
+        new Rule("Transmute", "~Transmute.*"),
+        new Rule("Retrace", "~Retrace"),
+        new Rule("Fuse", "~Fuse"),
+        new Rule("Suspend", "Suspend[^~]*~"),
+        new Rule("Suspend", "~Suspend[^~]*"),
+        new Rule("Overload", "~Overload.*"),
+        new Rule("Reinforce", "~Reinforce.*"),
+        new Rule("Affinity for ", "^Affinity for [^~]*~"),
+        new Rule("Prowl", "Prowl[^~]*~"),
+        new Rule("Splice onto Arcane", "~Splice onto Arcane.*"),
+        new Rule(ALTERNATIVE_COST, "^(You may [^.]*|If you control [^.]*) rather than pay this spell's mana cost\\.~"),
+        new Rule(ALTERNATIVE_COST, "^If [^.]*, you may [^.]* rather than pay this spell's mana cost\\.~"),
+        new Rule("This spell can't be countered.", "This spell can't be countered\\.~")
+    ));
+
+    // keyword -> rules (by index) which require that keyword.
+    private static final Map<String, BitSet> KEYWORD_RULES = new HashMap<>();
+
+    private static final ThreadLocal<Matcher> KEYWORDS;
+
+    private static final int MAX_KEYWORD_LENGTH;
+
+    static {
+        final List<String> keywords = new ArrayList<>();
+        int maxLength = 0;
+        for (int i = 0; i < RULES.size(); i++) {
+            final String keyword = RULES.get(i).keyword;
+            if (!KEYWORD_RULES.containsKey(keyword)) {
+                KEYWORD_RULES.put(keyword, new BitSet());
+                keywords.add(Pattern.quote(keyword));
+                maxLength = Math.max(maxLength, keyword.length());
+            }
+            KEYWORD_RULES.get(keyword).set(i);
+        }
+        KEYWORDS = TextRules.newMatcher(String.join("|", keywords));
+        MAX_KEYWORD_LENGTH = maxLength;
+    }
+
+    private static final ThreadLocal<Matcher> FIRST_OR_TRAILING_SEPARATOR = TextRules.newMatcher("(^~|~(?!.))");
+
+    private String abilityText;
+    private String effectText;
+
+    private KeywordAbilities(final String effectText) {
+        this.effectText = effectText;
+    }
+
+    /**
+     * Splits the given "~" separated effect text into keyword abilities and the remaining effect text.
+     */
+    static KeywordAbilities extract(final String effectText) {
+        final KeywordAbilities abilities = new KeywordAbilities(effectText);
+        final BitSet candidates = new BitSet(RULES.size());
+        findKeywords(effectText, 0, effectText.length(), candidates);
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            abilities.effectToAbility(RULES.get(i).matcher.get(), candidates);
+        }
+        return abilities;
+    }
+
+    /**
+     * Flags the rules whose keyword occurs in the given region of {@code text}.
+     * Occurrences may overlap so each position is tried in turn.
+     */
+    private static void findKeywords(final String text, final int start, final int end, final BitSet candidates) {
+        final Matcher matcher = KEYWORDS.get().reset(text).region(start, end);
+        int from = start;
+        while (from < end && matcher.region(from, end).find()) {
+            candidates.or(KEYWORD_RULES.get(matcher.group()));
+            from = matcher.start() + 1;
+        }
+    }
+
+    private void effectToAbility(final Matcher matcher, final BitSet candidates) {
+        if (matcher.reset(effectText).find()) {
+            final String ability = matcher.group(0);
+            abilityText = (abilityText == null)
+                ? StringUtils.replace(FIRST_OR_TRAILING_SEPARATOR.get().reset(ability).replaceFirst(""), "~", ABILITY_SEPARATOR)
+                : abilityText + ABILITY_SEPARATOR + StringUtils.replace(StringUtils.removeStart(ability, "~"), "~", ABILITY_SEPARATOR);
+            final int join = matcher.start();
+            effectText = effectText.substring(0, join) + effectText.substring(matcher.end());
+            // removing the match may have joined up a keyword for a later rule.
+            findKeywords(
+                effectText,
+                Math.max(0, join - MAX_KEYWORD_LENGTH + 1),
+                Math.min(effectText.length(), join + MAX_KEYWORD_LENGTH - 1),
+                candidates
+            );
+        }
+    }
+
+    /**
+     * @return the rules in table order (see KeywordAbilitiesCheck in the bench folder).
+     */
+    static List<Rule> getRules() {
+        return RULES;
+    }
+
+    String getAbilityText() {
+        return abilityText;
+    }
+
+    String getEffectText() {
+        return effectText;
+    }
+
+}
@@ -0,0 +1,38 @@
+package mtgjson.reader;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.util.Locale;
+
+/**
+ * Links cards to their magiccards.info scan, the set part of the url is built once per set.
+ */
+final class MagicCardsInfoImages implements ImageUrlResolver {
+
+    static final MagicCardsInfoImages INSTANCE = new MagicCardsInfoImages();
+
+    private MagicCardsInfoImages() {}
+
+    @Override
+    public SetImageUrls forSet(final String jsonSetCode, final String setCode) {
+        final String setFolder = setCode.toLowerCase(Locale.ENGLISH);
+        final String prefix = "https://magiccards.info/scans/en/" + setFolder + "/";
+        return card -> {
+            JsonElement number = card.get("number");
+            if (number == null) {
+                number = card.get("mciNumber");
+            }
+            if (number != null) {
+                return prefix + number.getAsString() + ".jpg";
+            }
+            return card.has("multiverseid") ? setFolder : null;
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "magiccards";
+    }
+
+}
@@ -0,0 +1,280 @@
+package mtgjson.reader;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Wall time, CPU time, allocated bytes, peak heap and item counts for each phase of a run.
+ * <p>
+ * A phase measures the thread which started it. Work done on other threads (eg. by a
+ * thread pool) is added to a phase by running it through {@link Phase#track}. Tracked
+ * work which runs on the thread of an open phase is only counted once, by the phase
+ * it was tracked for. CPU time and allocations are -1 if the JVM cannot measure them.
+ * Allocations are read through {@code com.sun.management.ThreadMXBean}, which is looked
+ * up at runtime so that the class does not depend on it.
+ */
+final class RunMetrics {
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    // (thread id) -> allocated bytes, or null if the JVM does not measure allocations.
+    private static final MethodHandle ALLOCATIONS = getAllocationsHandle();
+
+    private final long startMillis = System.currentTimeMillis();
+    private final long startNanos = System.nanoTime();
+    private final Map<String, Phase> phases = new LinkedHashMap<>();
+    private final List<Phase> openPhases = new CopyOnWriteArrayList<>();
+
+    // name -> value, for the settings used by the run.
+    private final Map<String, Object> settings = new LinkedHashMap<>();
+
+    /**
+     * A named phase, which can be started and stopped more than once.
+     */
+    final class Phase {
+
+        private final String name;
+        private final AtomicLong wallNanos = new AtomicLong();
+        private final AtomicLong cpuNanos = new AtomicLong();
+        private final AtomicLong allocatedBytes = new AtomicLong();
+        private final Map<String, AtomicLong> counts = new LinkedHashMap<>();
+        private long peakHeapBytes;
+
+        // the measured thread, set while the phase is open.
+        private volatile Thread owner;
+        private long startWall;
+        private long startCpu;
+        private long startAllocated;
+
+        private Phase(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Starts measuring the current thread, resetting the peak heap usage if no other phase is open.
+         */
+        Phase start() {
+            start(Thread.currentThread());
+            startCpu = threadCpuNanos();
+            startAllocated = threadAllocatedBytes();
+            return this;
+        }
+
+        /**
+         * Starts the wall clock only, for a phase whose work is all done by {@link #track tracked} tasks.
+         */
+        Phase startTasks() {
+            start(null);
+            return this;
+        }
+
+        private void start(final Thread thread) {
+            if (openPhases.isEmpty()) {
+                resetPeakHeap();
+            }
+            owner = thread;
+            startWall = System.nanoTime();
+            openPhases.add(this);
+        }
+
+        void stop() {
+            openPhases.remove(this);
+            wallNanos.addAndGet(System.nanoTime() - startWall);
+            if (owner != null) {
+                cpuNanos.addAndGet(threadCpuNanos() - startCpu);
+                allocatedBytes.addAndGet(threadAllocatedBytes() - startAllocated);
+            }
+            peakHeapBytes = Math.max(peakHeapBytes, getPeakHeap());
+            owner = null;
+        }
+
+        /**
+         * @return a task which runs {@code task} and adds its CPU time and allocations to this phase.
+         */
+        Runnable track(final Runnable task) {
+            return () -> {
+                final long cpu = threadCpuNanos();
+                final long allocated = threadAllocatedBytes();
+                try {
+                    task.run();
+                } finally {
+                    addThreadWork(this, threadCpuNanos() - cpu, threadAllocatedBytes() - allocated);
+                }
+            };
+        }
+
+        /**
+         * Adds {@code delta} to the named item count.
+         */
+        void count(final String item, final long delta) {
+            AtomicLong count;
+            synchronized (counts) {
+                count = counts.get(item);
+                if (count == null) {
+                    count = new AtomicLong();
+                    counts.put(item, count);
+                }
+            }
+            count.addAndGet(delta);
+        }
+
+        private JsonObject toJson() {
+            final JsonObject json = new JsonObject();
+            json.addProperty("name", name);
+            json.addProperty("wallMillis", wallNanos.get() / 1e6);
+            json.addProperty("cpuMillis", THREADS.isCurrentThreadCpuTimeSupported() ? cpuNanos.get() / 1e6 : -1);
+            json.addProperty("allocatedBytes", ALLOCATIONS != null ? allocatedBytes.get() : -1);
+            json.addProperty("peakHeapBytes", peakHeapBytes);
+            final JsonObject countsJson = new JsonObject();
+            synchronized (counts) {
+                for (Map.Entry<String, AtomicLong> count : counts.entrySet()) {
+                    countsJson.addProperty(count.getKey(), count.getValue().get());
+                }
+            }
+            json.add("counts", countsJson);
+            return json;
+        }
+    }
+
+    /**
+     * @return the named phase, created (unstarted) if needed. Phases are reported in the order they were created.
+     */
+    synchronized Phase phase(final String name) {
+        Phase phase = phases.get(name);
+        if (phase == null) {
+            phase = new Phase(name);
+            phases.put(name, phase);
+        }
+        return phase;
+    }
+
+    void setting(final String name, final Object value) {
+        settings.put(name, value);
+    }
+
+    private void addThreadWork(final Phase phase, final long cpu, final long allocated) {
+        final Thread current = Thread.currentThread();
+        // open phases on this thread already measure the work, only count it once.
+        for (Phase open : openPhases) {
+            if (open.owner == current && open != phase) {
+                open.cpuNanos.addAndGet(-cpu);
+                open.allocatedBytes.addAndGet(-allocated);
+            }
+        }
+        if (phase.owner != current) {
+            phase.cpuNanos.addAndGet(cpu);
+            phase.allocatedBytes.addAndGet(allocated);
+        }
+    }
+
+    /**
+     * Saves the metrics for every phase as json.
+     */
+    void save(final Path metricsFile) throws IOException {
+        final JsonObject json = new JsonObject();
+        final SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        json.addProperty("started", format.format(new Date(startMillis)));
+        json.addProperty("wallMillis", (System.nanoTime() - startNanos) / 1e6);
+        json.addProperty("availableProcessors", Runtime.getRuntime().availableProcessors());
+        json.addProperty("maxHeapBytes", Runtime.getRuntime().maxMemory());
+        final JsonObject settingsJson = new JsonObject();
+        for (Map.Entry<String, Object> setting : settings.entrySet()) {
+            settingsJson.addProperty(setting.getKey(), String.valueOf(setting.getValue()));
+        }
+        json.add("settings", settingsJson);
+        final JsonArray phasesJson = new JsonArray();
+        for (Phase phase : getPhases()) {
+            phasesJson.add(phase.toJson());
+        }
+        json.add("phases", phasesJson);
+        final String text = new GsonBuilder().setPrettyPrinting().create().toJson(json) + "\n";
+        Files.write(metricsFile, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private synchronized List<Phase> getPhases() {
+        return new ArrayList<>(phases.values());
+    }
+
+    private static long threadCpuNanos() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : 0;
+    }
+
+    private static long threadAllocatedBytes() {
+        if (ALLOCATIONS == null) {
+            return 0;
+        }
+        try {
+            return (long) ALLOCATIONS.invokeExact(Thread.currentThread().getId());
+        } catch (Throwable ex) {
+            return 0;
+        }
+    }
+
+    private static MethodHandle getAllocationsHandle() {
+        try {
+            final Class<?> bean = Class.forName("com.sun.management.ThreadMXBean");
+            if (!bean.isInstance(THREADS)) {
+                return null;
+            }
+            final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            final boolean supported = (boolean) lookup
+                    .findVirtual(bean, "isThreadAllocatedMemorySupported", MethodType.methodType(boolean.class))
+                    .invoke(THREADS);
+            if (!supported) {
+                return null;
+            }
+            lookup.findVirtual(bean, "setThreadAllocatedMemoryEnabled", MethodType.methodType(void.class, boolean.class))
+                    .invoke(THREADS, true);
+            return lookup.findVirtual(bean, "getThreadAllocatedBytes", MethodType.methodType(long.class, long.class))
+                    .bindTo(THREADS);
+        } catch (Throwable ex) {
+            // not a HotSpot style JVM.
+            return null;
+        }
+    }
+
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /**
+     * @return the sum of the peak usage of each heap pool, an upper bound of the peak heap size.
+     */
+    private static long getPeakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+}
@@ -0,0 +1,72 @@
+package mtgjson.reader;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Imports the scripts from a bundle created with {@code -DscriptsBundle=true} (eg.
+ * "OUTPUT/scripts_missing.zip") into a folder such as Magarena's "scripts_missing" folder.
+ * <p>
+ * Only the scripts which are new or have changed are written, the rest of the folder is left as is.
+ */
+public final class ScriptBundle {
+
+    private ScriptBundle() {}
+
+    /**
+     * @return the number of scripts written to the folder.
+     */
+    public static int extract(final Path bundleFile, final Path folder) throws IOException {
+        Files.createDirectories(folder);
+        int count = 0;
+        final ByteArrayOutputStream script = new ByteArrayOutputStream(4096);
+        final byte[] buffer = new byte[8192];
+        try (final ZipInputStream in = new ZipInputStream(new BufferedInputStream(Files.newInputStream(bundleFile), 1 << 16))) {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                final String scriptFilename = entry.getName();
+                // the bundle only holds script files, never paths.
+                if (entry.isDirectory() || scriptFilename.contains("/") || scriptFilename.contains("\\")
+                        || scriptFilename.startsWith(".")) {
+                    throw new IOException("Invalid script in " + bundleFile + ": " + scriptFilename);
+                }
+                script.reset();
+                int n;
+                while ((n = in.read(buffer)) > 0) {
+                    script.write(buffer, 0, n);
+                }
+                final Path scriptFile = folder.resolve(scriptFilename);
+                final byte[] bytes = script.toByteArray();
+                if (!isUnchanged(scriptFile, bytes)) {
+                    Files.write(scriptFile, bytes);
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static boolean isUnchanged(final Path scriptFile, final byte[] script) throws IOException {
+        return Files.isRegularFile(scriptFile)
+                && Files.size(scriptFile) == script.length
+                && Arrays.equals(Files.readAllBytes(scriptFile), script);
+    }
+
+    /**
+     * Usage: ScriptBundle OUTPUT/scripts_missing.zip /path/to/Magarena/scripts_missing
+     */
+    public static void main(String[] args) throws IOException {
+        final long start_time = System.currentTimeMillis();
+        final int count = extract(Paths.get(args[0]), Paths.get(args[1]));
+        System.out.printf("Wrote %d new or changed scripts to %s in %.1f seconds.\n",
+                count, args[1], (System.currentTimeMillis() - start_time) / 1000.0);
+    }
+
+}
@@ -0,0 +1,1587 @@
+package mtgjson.reader;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.apache.commons.io.FileUtils;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.Map.Entry;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Given a list of missing card names from Magarena this will attempt to match each
+ * card name to an entry in the json feed from mgtjson.com and create a script file
+ * for each matching card.
+ * <p>
+ * All state belongs to the instance so several generators (each with its own
+ * {@link Config}) can be used in the same JVM. A generator can be run repeatedly,
+ * the cards loaded from the json feed are kept in memory and reused until the feed
+ * changes. Runs of the same generator are serialized since they share the same
+ * output folder.
+ */
+public final class ScriptGenerator {
+
+    // All input data required should be stored in this folder (will fail if missing!).
+    private static final String INPUT_FOLDER = "INPUT";
+
+    // All data generated will be stored in this folder (it will be created if missing).
+    private static final String OUTPUT_FOLDER = "OUTPUT";
+
+    // Each run (and each update in watch mode) is built in a staging folder next to the
+    // OUTPUT_FOLDER which then replaces it, the previous OUTPUT_FOLDER is deleted in the
+    // background. Scripts kept from the previous OUTPUT_FOLDER are hard links, not copies.
+    // Any of these folders left by a run which did not complete are deleted by the next run,
+    // which first moves the previous OUTPUT_FOLDER back if the OUTPUT_FOLDER is missing.
+    private static final String OUTPUT_STAGING_PREFIX = "." + OUTPUT_FOLDER + "-staging-";
+    private static final String OUTPUT_PREVIOUS_PREFIX = "." + OUTPUT_FOLDER + "-previous-";
+    private static final String OUTPUT_DELETING_PREFIX = "." + OUTPUT_FOLDER + "-deleting-";
+
+    // This file is created next to the OUTPUT_FOLDER and locked while a run uses the staging
+    // folders, so runs against the same folder (eg. by other processes) wait for each other.
+    private static final String OUTPUT_LOCK_FILE = "." + OUTPUT_FOLDER + ".lock";
+
+    // This folder is automatically created in the OUTPUT_FOLDER.
+    // Contains set of scripts files to be added to the Magarena "scripts_missing" folder.
+    private static final String SCRIPTS_MISSING_FOLDER = "scripts_missing";
+
+    // This file is created in the OUTPUT_FOLDER instead of SCRIPTS_MISSING_FOLDER when running in
+    // scripts bundle mode. It holds every script, use ScriptBundle to extract them.
+    private static final String SCRIPTS_BUNDLE_FILE = "scripts_missing.zip";
+
+    // Optional. This folder is manually created in the INPUT_FOLDER.
+    // This folder should contain scripts whose "image" property needs to be updated.
+    private static final String INVALID_IMAGE_SCRIPTS_FOLDER = "invalid_image_scripts";
+
+    // This file is created in the OUTPUT_FOLDER and lists any scripts in
+    // INVALID_IMAGE_SCRIPTS_FOLDER which could not be updated.
+    private static final String IMAGE_UPDATE_ERROR_LOG = "SkippedInvalidImageScripts.log";
+
+    // Required. Place this file in the INPUT_FOLDER.
+    // It is obtained from mtgjson.com. It contains every card grouped by set.
+    private static final String JSON_FILE = "AllPrintings.json";
+
+    // Required. Place this file in the INPUT_FOLDER.
+    // This is a list of the cards which have not yet been implemented in Magarena.
+    // In effect it is the list of cards in "AllCardNames.txt" minus those cards which
+    // have a matching script file in the "scripts" folder. This file can be created
+    // from the Cards Explorer screen by running Magarena in dev mode (-DdevMode=true).
+    private static final String MISSING_CARDS_FILE = "CardsMissingInMagarena.txt";
+
+    // This file is automatically created in the OUTPUT_FOLDER.
+    // This file contains entries from MISSING_CARDS_FILE which have no matching entry
+    // in JSON_FILE. Check the name for typos, strange characters, etc.
+    private static final String MISSING_ORPHANS_FILE = "MissingCardOrphans.txt";
+
+    // This file is automatically created in the OUTPUT_FOLDER.
+    // Lists the entries from MISSING_CARDS_FILE which had no exact match in JSON_FILE but
+    // which were matched after normalizing the name ("->") and those with similar names ("~>").
+    private static final String RESOLVED_ORPHANS_FILE = "ResolvedCardOrphans.txt";
+
+    // Maximum number of edits between the normalized names of a suggested match
+    // and the number of the closest names suggested for each orphan.
+    private static final int MAX_ORPHAN_EDIT_DISTANCE = 2;
+    private static final int MAX_ORPHAN_SUGGESTIONS = 3;
+
+    // Optional. This file is manually created in the INPUT_FOLDER.
+    // Use this file to override the automatically generated image link for a given script file.
+    // This is applies to both the scripts generator and image line batch updater.
+    private static final String PREDEFINED_IMAGES_FILE = "CardImages.txt";
+
+    // Optional. Place this file in the INPUT_FOLDER.
+    // Scryfall bulk data (https://scryfall.com/docs/api/bulk-data) used for the predefined image links
+    // of every card, any links in PREDEFINED_IMAGES_FILE take precedence.
+    private static final String SCRYFALL_IMAGES_FILE = "scryfall-default-cards.json";
+
+    // This file is automatically created in the OUTPUT_FOLDER (for reference only).
+    // list of all set codes from json feed sorted by release date in descending order.
+    private static final String JSON_SETS_FILE = "JsonSetCodes.txt";
+
+    // Set codes to be ignored in the json feed - no card data will be used from these sets.
+    // Emphasis is on using base sets for extra language support.
+    private static final Set<String> invalidSetCodes = Collections.unmodifiableSet(new HashSet<>(
+            Arrays.asList(
+                //Not on MagicCards.info
+
+                //No crops - Comment out the sets below if running for Orphaned files
+                "C13", "M14", "C15", "THS", "BNG"
+
+            )
+    ));
+
+    private static final Set<String> validSetCodes = Collections.unmodifiableSet(new HashSet<>(
+        Arrays.asList(
+            "LEA", "LEB", "2ED", "ARN", "ATQ", "3ED", "LEG", "DRK", "FEM", "4ED", "ICE", "HML", "ALL", "MIR", "VIS",
+            "5ED", "POR", "WTH", "TMP", "STH", "EXO", "PO2", "USG", "ULG", "6ED", "PTK", "UDS", "S99", "MMQ", "NMS",
+            "S00", "PCY", "INV", "PLS", "7ED", "APC", "ODY", "TOR", "JUD", "ONS", "LGN", "SCG", "8ED", "MRD", "DST",
+            "5DN", "CHK", "BOK", "SOK", "9ED", "RAV", "GPT", "DIS", "CSP", "CST", "TSB", "TSP", "PLC", "FUT", "10E",
+            "LRW", "MOR", "SHM", "EVE", "ALA", "CON", "ARB", "M10", "ZEN", "WWK", "ROE", "M11", "SOM", "MBS", "NPH",
+            "CMD", "M12", "ISD", "DKA", "AVR", "PC2", "M13", "RTR", "GTC", "DGM", "MMA", "M14", "THS", "C13", "BNG",
+            "JOU", "CNS", "M15", "KTK", "C14", "FRF", "DTK", "MM2", "ORI", "BFZ", "C15", "OGW", "SOI", "EMA", "EMN",
+            "CN2", "KLD", "C16", "AER", "MM3", "AKH", "HOU", "C17", "XLN", "IMA", "RIX", "A25", "DOM", "M19", "C18",
+            "GRN", "GNT",
+                "pMEI"
+
+        )
+    ));
+
+    // json set code -> magiccards.info set code, where they differ.
+    private static final Map<String, String> mtginfoSetsMap = Collections.unmodifiableMap(getMtgInfoSetsMap());
+
+    private static final String ERRORS_FILE = "errors.txt";
+
+    // This file is automatically created in the OUTPUT_FOLDER.
+    // Wall time, CPU time, allocated bytes, peak heap and item counts for each phase of the run.
+    private static final String METRICS_FILE = "metrics.json";
+
+    // This file is automatically created in the OUTPUT_FOLDER when running in incremental mode.
+    // It lists a content hash of each script in SCRIPTS_MISSING_FOLDER and the card it was generated from.
+    private static final String SCRIPTS_MANIFEST_FILE = "ScriptsManifest.txt";
+
+    // Card data extracted from JSON_FILE is cached in this folder (it will be created if missing)
+    // and reused by later runs until JSON_FILE or the set code settings above are changed.
+    private static final String CACHE_FOLDER = "CACHE";
+    private static final String CARD_CACHE_FILE = "AllPrintings.cache";
+
+    // The links read from PREDEFINED_IMAGES_FILE and SCRYFALL_IMAGES_FILE are indexed in the CACHE_FOLDER
+    // (as "<file>.index") and the index is used until the file is changed.
+    private static final String IMAGES_INDEX_EXTENSION = ".index";
+
+    /**
+     * The settings for a generator, see {@link Builder}.
+     */
+    public static final class Config {
+
+        private final Path baseFolder;
+        private final boolean incremental;
+        private final boolean cardCache;
+        private final boolean predefinedImages;
+        private final boolean missingCardsOnly;
+        private final boolean scriptsBundle;
+        private final ImageUrlChain imageUrls;
+        private final TimingRules timingRules;
+        private final int extractThreads;
+        private final int writeThreads;
+        private final PrintStream log;
+
+        private Config(final Builder builder) {
+            this.baseFolder = builder.baseFolder;
+            this.incremental = builder.incremental;
+            this.cardCache = builder.cardCache;
+            this.predefinedImages = builder.predefinedImages;
+            this.missingCardsOnly = builder.missingCardsOnly;
+            this.scriptsBundle = builder.scriptsBundle;
+            this.imageUrls = new ImageUrlChain(builder.imageUrls);
+            this.timingRules = builder.timingRules;
+            this.extractThreads = Math.max(1, builder.extractThreads);
+            this.writeThreads = Math.max(1, builder.writeThreads);
+            this.log = builder.log;
+        }
+
+        public static Builder builder() {
+            return new Builder();
+        }
+
+        /**
+         * The settings given as system properties (see README), relative to the current folder.
+         */
+        public static Config fromSystemProperties() {
+            return builder()
+                    .incremental(Boolean.getBoolean("incremental"))
+                    .cardCache(Boolean.parseBoolean(System.getProperty("cardCache", "true")))
+                    .predefinedImages(Boolean.getBoolean("predefinedImages"))
+                    .missingCardsOnly(Boolean.getBoolean("missingCardsOnly"))
+                    .scriptsBundle(Boolean.getBoolean("scriptsBundle"))
+                    .imageUrls(ImageUrlResolver.parseChain(System.getProperty("imageUrls", ImageUrlResolver.DEFAULT_CHAIN)))
+                    .timingRules(getTimingRules(System.getProperty("timingRules")))
+                    .extractThreads(Integer.getInteger("extractThreads", Runtime.getRuntime().availableProcessors()))
+                    .writeThreads(Integer.getInteger("writeThreads", Runtime.getRuntime().availableProcessors()))
+                    .build();
+        }
+
+        /**
+         * @return the rules in the given file or the default rules if there is no file.
+         */
+        static TimingRules getTimingRules(final String file) {
+            if (file == null) {
+                return TimingRules.DEFAULT;
+            }
+            try {
+                return TimingRules.load(Paths.get(file));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    public static final class Builder {
+
+        // The INPUT_FOLDER, OUTPUT_FOLDER and CACHE_FOLDER are in this folder.
+        private Path baseFolder = Paths.get("");
+
+        // Incremental mode keeps the scripts from the previous run and only writes scripts
+        // which have changed, deleting any for cards that are no longer missing.
+        private boolean incremental;
+
+        // Set to false to always parse JSON_FILE rather than use the card cache.
+        private boolean cardCache = true;
+
+        // Use the image links in PREDEFINED_IMAGES_FILE (for a full database reparse).
+        private boolean predefinedImages;
+
+        // Only build full card data for the cards which could match a card in MISSING_CARDS_FILE,
+        // the other cards just get the name and image url used to update INVALID_IMAGE_SCRIPTS_FOLDER.
+        // The loaded cards (and card cache) are then only reused while MISSING_CARDS_FILE is unchanged.
+        private boolean missingCardsOnly;
+
+        // Write all the scripts to a single SCRIPTS_BUNDLE_FILE rather than a file per script
+        // in SCRIPTS_MISSING_FOLDER. The bundle is rewritten on every run, even in incremental mode.
+        private boolean scriptsBundle;
+
+        // The image hosts used for the image link generated for each card, in the order they are tried
+        // (see ImageUrlResolver.parseChain). Changing them invalidates the card cache.
+        private List<ImageUrlResolver> imageUrls = ImageUrlResolver.parseChain(ImageUrlResolver.DEFAULT_CHAIN);
+
+        // The rules which decide the timing property of each script (see TimingRules).
+        private TimingRules timingRules = TimingRules.DEFAULT;
+
+        // Number of threads used to build card data from the json feed. Sets are extracted
+        // in parallel and merged by release date so the output is the same whatever the
+        // value. Set to 1 to extract each set in turn on the calling thread.
+        private int extractThreads = Runtime.getRuntime().availableProcessors();
+
+        // Number of threads used to write script files and to update the image property
+        // of the scripts in INVALID_IMAGE_SCRIPTS_FOLDER.
+        private int writeThreads = Runtime.getRuntime().availableProcessors();
+
+        // Progress messages are printed here.
+        private PrintStream log = System.out;
+
+        private Builder() {}
+
+        public Builder baseFolder(final Path folder) {
+            this.baseFolder = folder;
+            return this;
+        }
+
+        public Builder incremental(final boolean value) {
+            this.incremental = value;
+            return this;
+        }
+
+        public Builder cardCache(final boolean value) {
+            this.cardCache = value;
+            return this;
+        }
+
+        public Builder predefinedImages(final boolean value) {
+            this.predefinedImages = value;
+            return this;
+        }
+
+        public Builder missingCardsOnly(final boolean value) {
+            this.missingCardsOnly = value;
+            return this;
+        }
+
+        public Builder scriptsBundle(final boolean value) {
+            this.scriptsBundle = value;
+            return this;
+        }
+
+        public Builder imageUrls(final List<ImageUrlResolver> resolvers) {
+            this.imageUrls = resolvers;
+            return this;
+        }
+
+        public Builder timingRules(final TimingRules rules) {
+            this.timingRules = rules;
+            return this;
+        }
+
+        public Builder extractThreads(final int threads) {
+            this.extractThreads = threads;
+            return this;
+        }
+
+        public Builder writeThreads(final int threads) {
+            this.writeThreads = threads;
+            return this;
+        }
+
+        public Builder log(final PrintStream out) {
+            this.log = out;
+            return this;
+        }
+
+        public Config build() {
+            return new Config(this);
+        }
+    }
+
+    /**
+     * What a single run of the generator did.
+     */
+    public static final class Result {
+
+        private final int jsonCards;
+        private final int missingCards;
+        private final int resolvedOrphans;
+        private final int missingOrphans;
+        private final int scripts;
+        private final int imageErrors;
+
+        private Result(int jsonCards, int missingCards, int resolvedOrphans, int missingOrphans, int scripts, int imageErrors) {
+            this.jsonCards = jsonCards;
+            this.missingCards = missingCards;
+            this.resolvedOrphans = resolvedOrphans;
+            this.missingOrphans = missingOrphans;
+            this.scripts = scripts;
+            this.imageErrors = imageErrors;
+        }
+
+        public int getJsonCards() {
+            return jsonCards;
+        }
+
+        public int getMissingCards() {
+            return missingCards;
+        }
+
+        public int getResolvedOrphans() {
+            return resolvedOrphans;
+        }
+
+        public int getMissingOrphans() {
+            return missingOrphans;
+        }
+
+        public int getScripts() {
+            return scripts;
+        }
+
+        public int getImageErrors() {
+            return imageErrors;
+        }
+    }
+
+    /**
+     * The inputs in the INPUT_FOLDER which affect the output, see {@link #update}.
+     */
+    public enum Input {
+        JSON_FILE(ScriptGenerator.JSON_FILE),
+        MISSING_CARDS_FILE(ScriptGenerator.MISSING_CARDS_FILE),
+        PREDEFINED_IMAGES_FILE(ScriptGenerator.PREDEFINED_IMAGES_FILE),
+        SCRYFALL_IMAGES_FILE(ScriptGenerator.SCRYFALL_IMAGES_FILE),
+        INVALID_IMAGE_SCRIPTS_FOLDER(ScriptGenerator.INVALID_IMAGE_SCRIPTS_FOLDER);
+
+        private final String filename;
+
+        Input(final String filename) {
+            this.filename = filename;
+        }
+
+        public String getFilename() {
+            return filename;
+        }
+
+        /**
+         * @return the input with the given file or folder name in the INPUT_FOLDER or null if it is not an input.
+         */
+        public static Input forFilename(final String filename) {
+            for (Input input : values()) {
+                if (input.filename.equals(filename)) {
+                    return input;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final Config config;
+    private final PrintStream log;
+
+    // the cards loaded by the previous run, reused while the json file is unchanged.
+    private CardDatabase loadedCards;
+    private long loadedJsonSize;
+    private long loadedJsonModified;
+    private String loadedCacheKey;
+
+    // the last completed run, updated by later calls to update().
+    private Run lastRun;
+
+    /**
+     * A run of the generator which writes to the given folder instead of the OUTPUT_FOLDER.
+     */
+    private interface StagedRun {
+        Result run(Path outputFolder) throws IOException;
+    }
+
+    public ScriptGenerator(final Config config) {
+        this.config = config;
+        this.log = config.log;
+    }
+
+    /**
+     * Creates a script for each missing card found in the json feed and updates the
+     * image property of any scripts in INVALID_IMAGE_SCRIPTS_FOLDER.
+     */
+    public synchronized Result generate() throws IOException {
+        final Run run = new Run();
+        final Result result = runStaged(false, outputFolder -> run.generate(outputFolder, newRunMetrics()));
+        lastRun = run;
+        return result;
+    }
+
+    /**
+     * Only repeats the stages of the last run which depend on the given inputs:
+     * <ul>
+     * <li>JSON_FILE - everything (same as {@link #generate}).</li>
+     * <li>MISSING_CARDS_FILE - card matching and the scripts (everything with missingCardsOnly).</li>
+     * <li>PREDEFINED_IMAGES_FILE, SCRYFALL_IMAGES_FILE - the scripts and updated image scripts (if predefined images are used).</li>
+     * <li>INVALID_IMAGE_SCRIPTS_FOLDER - the updated image scripts.</li>
+     * </ul>
+     * If there has been no run yet this is the same as {@link #generate}.
+     */
+    public synchronized Result update(final Set<Input> changedInputs) throws IOException {
+        if (lastRun == null || changedInputs.contains(Input.JSON_FILE)
+                || (config.missingCardsOnly && changedInputs.contains(Input.MISSING_CARDS_FILE))) {
+            return generate();
+        }
+        return runStaged(true, outputFolder -> lastRun.update(outputFolder, changedInputs, newRunMetrics()));
+    }
+
+    /**
+     * @return the cards in the json feed, loaded from memory or the card cache if the feed is unchanged.
+     */
+    public synchronized CardDatabase loadCards() throws IOException {
+        return loadCards(new RunMetrics());
+    }
+
+    /**
+     * Regenerates the output each time the files in the INPUT_FOLDER change until interrupted.
+     */
+    public void watch() throws IOException, InterruptedException {
+        new InputWatcher(this, getInputPath(), log).run();
+    }
+
+    private RunMetrics newRunMetrics() {
+        final RunMetrics metrics = new RunMetrics();
+        metrics.setting("incremental", config.incremental);
+        metrics.setting("cardCache", config.cardCache);
+        metrics.setting("missingCardsOnly", config.missingCardsOnly);
+        metrics.setting("scriptsBundle", config.scriptsBundle);
+        metrics.setting("imageUrls", config.imageUrls.toString());
+        metrics.setting("timingRules", config.timingRules.toString());
+        metrics.setting("extractThreads", config.extractThreads);
+        metrics.setting("writeThreads", config.writeThreads);
+        return metrics;
+    }
+
+    /**
+     * The state of a run of the generator, kept so that the run can be updated.
+     */
+    private final class Run {
+
+        // the links read from each predefined images file, a later file overriding the earlier ones.
+        private final List<ImageOverrides> predefinedCardImages = new ArrayList<>();
+        private final List<String> magarenaMissingCards = new ArrayList<>();
+
+        // missing card name -> json card renamed to the missing card name (see resolveMissingCardOrphans).
+        private final Map<String, CardData> resolvedCards = new HashMap<>();
+        private final Map<String, String> resolvedImageLinks = new HashMap<>();
+
+        // sorted names of the missing cards found in the json feed.
+        private final List<String> mtgcomCardNames = new ArrayList<>();
+
+        private CardDatabase cards;
+        private int missingOrphans;
+        private int scriptCount;
+
+        // the script files written by the last writeScripts, fewer than scriptCount in incremental mode.
+        private int writtenCount;
+
+        // the (staging) folder the run is writing to, given to each generate() or update().
+        private Path outputFolder;
+
+        private Result generate(final Path outputFolder, final RunMetrics metrics) throws IOException {
+
+            this.outputFolder = outputFolder;
+
+            cards = loadCards(metrics);
+            log.printf("-> Total unique cards identified in json feed = %d (see %s).\n",
+                    cards.size(), getJsonFile());
+
+            // save list of set codes for reference (the sets are indexed by jsonParse).
+            final RunMetrics.Phase setPhase = metrics.phase("setCodesFile").start();
+            logSetCodes(cards.getSortedSetCodes());
+            setPhase.count("sets", cards.getSortedSetCodes().size());
+            setPhase.stop();
+
+            loadMissingMagarenaCards(metrics);
+
+            if (config.predefinedImages) {
+                loadPredefinedCardImages();
+            }
+
+            matchMissingCards(metrics);
+
+            //saveReplacementOracle(mtgcomCardNames);
+
+            writeScripts(metrics);
+
+            final RunMetrics.Phase imagePhase = metrics.phase("imageUpdating").start();
+            updateScriptsImageProperty(imagePhase);
+            imagePhase.stop();
+
+            final RunMetrics.Phase errorPhase = metrics.phase("errorLogging").start();
+            logErrorDetails();
+            errorPhase.count("errors", cards.getImageErrors().size());
+            errorPhase.stop();
+
+            saveMetrics(metrics);
+            return getResult();
+        }
+
+        private Result update(final Path outputFolder, final Set<Input> changedInputs, final RunMetrics metrics) throws IOException {
+
+            this.outputFolder = outputFolder;
+
+            final boolean missingCardsChanged = changedInputs.contains(Input.MISSING_CARDS_FILE);
+            final boolean imagesChanged = config.predefinedImages
+                    && (changedInputs.contains(Input.PREDEFINED_IMAGES_FILE) || changedInputs.contains(Input.SCRYFALL_IMAGES_FILE));
+
+            if (missingCardsChanged) {
+                loadMissingMagarenaCards(metrics);
+                matchMissingCards(metrics);
+            }
+
+            if (imagesChanged) {
+                predefinedCardImages.clear();
+                loadPredefinedCardImages();
+            }
+
+            if (missingCardsChanged || imagesChanged) {
+                writeScripts(metrics);
+            }
+
+            if (imagesChanged || changedInputs.contains(Input.INVALID_IMAGE_SCRIPTS_FOLDER)) {
+                final RunMetrics.Phase imagePhase = metrics.phase("imageUpdating").start();
+                FileUtils.deleteQuietly(getOutputPath().resolve(INVALID_IMAGE_SCRIPTS_FOLDER).toFile());
+                FileUtils.deleteQuietly(getOutputPath().resolve(IMAGE_UPDATE_ERROR_LOG).toFile());
+                updateScriptsImageProperty(imagePhase);
+                imagePhase.stop();
+            }
+
+            saveMetrics(metrics);
+            return getResult();
+        }
+
+        private Result getResult() {
+            return new Result(
+                    cards.size(),
+                    magarenaMissingCards.size(),
+                    resolvedCards.size(),
+                    missingOrphans,
+                    scriptCount,
+                    cards.getImageErrors().size()
+            );
+        }
+
+        private void loadMissingMagarenaCards(final RunMetrics metrics) {
+            final RunMetrics.Phase missingPhase = metrics.phase("missingCards").start();
+            loadMissingMagarenaCards();
+            missingPhase.count("cards", magarenaMissingCards.size());
+            missingPhase.stop();
+            log.printf("-> Total missing cards in Magarena = %d (see %s).\n",
+                    magarenaMissingCards.size(), getMissingCardsFile());
+        }
+
+        private void matchMissingCards(final RunMetrics metrics) {
+            final RunMetrics.Phase matchPhase = metrics.phase("orphanMatching").start();
+            final long match_time = System.nanoTime();
+
+            // hash indexed card names so that matching is linear in the number of names.
+            final Set<String> missingCardNames = new HashSet<>(magarenaMissingCards);
+            final long index_time = System.nanoTime();
+
+            resolvedCards.clear();
+            resolvedImageLinks.clear();
+            FileUtils.deleteQuietly(getOutputPath().resolve(RESOLVED_ORPHANS_FILE).toFile());
+            missingOrphans = saveListOfMissingCardOrphans(resolveMissingCardOrphans(matchPhase));
+            log.printf("-> Total missing cards which could not be matched in \"%s\" = %d (see %s).\n",
+                    JSON_FILE, missingOrphans, getFinalPath(getMissingOrphansFile().toPath()));
+            final long orphans_time = System.nanoTime();
+
+            // From this point, only interested in cards defined in MISSING_CARDS_FILE
+            // so only the matching card names need to be sorted.
+            mtgcomCardNames.clear();
+            for (String cardName : missingCardNames) {
+                if (hasCard(cardName)) {
+                    mtgcomCardNames.add(cardName);
+                }
+            }
+            Collections.sort(mtgcomCardNames);
+            final long select_time = System.nanoTime();
+            matchPhase.count("matched", mtgcomCardNames.size());
+            matchPhase.count("orphans", missingOrphans);
+            matchPhase.stop();
+
+            log.printf("-> Matched %d missing cards in %.1f ms (index %.1f ms, orphans %.1f ms, select %.1f ms).\n",
+                    mtgcomCardNames.size(),
+                    (select_time - match_time) / 1e6,
+                    (index_time - match_time) / 1e6,
+                    (orphans_time - index_time) / 1e6,
+                    (select_time - orphans_time) / 1e6
+            );
+        }
+
+        private void writeScripts(final RunMetrics metrics) throws IOException {
+            final RunMetrics.Phase writePhase = metrics.phase("scriptWriting").start();
+            final long write_time = System.nanoTime();
+            scriptCount = saveMissingCardData(mtgcomCardNames, writePhase);
+            final double writeSeconds = (double)(System.nanoTime() - write_time) / 1e9;
+            writePhase.count("scripts", scriptCount);
+            writePhase.count("written", writtenCount);
+            writePhase.stop();
+            log.printf("-> Created %d script files in \"%s\" (%.0f files/sec).\n",
+                    writtenCount, getFinalPath(getScriptsOutput()), writtenCount / Math.max(writeSeconds, 1e-3)
+            );
+        }
+
+        private boolean hasCard(final String cardName) {
+            return cards.hasCard(cardName) || resolvedCards.containsKey(cardName);
+        }
+
+        private CardData getCard(final String cardName) {
+            final CardData card = resolvedCards.get(cardName);
+            return card != null ? card : cards.getCard(cardName);
+        }
+
+        /**
+         * Tries to match the card names that are present in the missing cards list from
+         * Magarena but which have no exact match in the json file from mtgjson.com using
+         * a normalized form of the name. Each resolved card is added to this run under its
+         * Magarena name, all resolutions and suggestions for the remaining names are saved
+         * to RESOLVED_ORPHANS_FILE.
+         *
+         * @return the sorted card names which could not be resolved.
+         */
+        private List<String> resolveMissingCardOrphans(final RunMetrics.Phase phase) {
+            final List<String> missingCardOrphans = new ArrayList<>();
+            for (String cardName : magarenaMissingCards) {
+                if (!cards.hasCard(cardName)) {
+                    missingCardOrphans.add(cardName);
+                }
+            }
+            Collections.sort(missingCardOrphans);
+            if (missingCardOrphans.isEmpty()) {
+                return missingCardOrphans;
+            }
+
+            final CardNameIndex nameIndex = new CardNameIndex(cards.getCardNames());
+            final List<String> unresolved = new ArrayList<>();
+            final List<String> report = new ArrayList<>();
+            int resolvedCount = 0;
+            int suggestedCount = 0;
+            for (String cardName : missingCardOrphans) {
+                final String jsonName = nameIndex.findNormalized(cardName);
+                if (jsonName != null) {
+                    final CardData card = cards.getCard(jsonName).withCardName(cardName);
+                    resolvedCards.put(cardName, card);
+                    resolvedImageLinks.putIfAbsent(card.getFilename(), card.getImageUrl());
+                    report.add(cardName + " -> " + jsonName);
+                    resolvedCount++;
+                } else {
+                    final List<String> similarNames = nameIndex.findClosest(cardName, MAX_ORPHAN_EDIT_DISTANCE, MAX_ORPHAN_SUGGESTIONS);
+                    if (!similarNames.isEmpty()) {
+                        report.add(cardName + " ~> " + String.join(" | ", similarNames));
+                        suggestedCount++;
+                    }
+                    unresolved.add(cardName);
+                }
+            }
+
+            if (!report.isEmpty()) {
+                final File textFile = getOutputPath().resolve(RESOLVED_ORPHANS_FILE).toFile();
+                try (final PrintWriter writer = new PrintWriter(textFile, "UTF-8")) {
+                    report.forEach(writer::println);
+                } catch (FileNotFoundException | UnsupportedEncodingException e) {
+                    throw new RuntimeException(e);
+                }
+                phase.count("resolved", resolvedCount);
+                log.printf("-> Resolved %d missing cards by normalized name, %d more have similar names (see %s).\n",
+                        resolvedCount, suggestedCount, getFinalPath(textFile.toPath()));
+            }
+            return unresolved;
+        }
+
+        /**
+         * Saves a list of the card names that are present in the missing cards list from
+         * Magarena but which have no matching card name in the json file from mtgjson.com.
+         */
+        private int saveListOfMissingCardOrphans(final List<String> missingCardOrphans) {
+            final File textFile = getMissingOrphansFile();
+            try (final PrintWriter writer = new PrintWriter(textFile)) {
+                missingCardOrphans.forEach(writer::println);
+            } catch (FileNotFoundException e) {
+                throw new RuntimeException(e);
+            }
+            return missingCardOrphans.size();
+        }
+
+        private int saveMissingCardData(final Iterable<String> cardNames, final RunMetrics.Phase phase) throws IOException {
+
+            // cards which share a script filename are written in name order so the last one wins.
+            final Map<String, CardData> scriptCards = new LinkedHashMap<>();
+            for (String cardName : cardNames) {
+                final CardData card = getCard(cardName);
+                scriptCards.put(card.getFilename(), card);
+            }
+
+            if (config.scriptsBundle) {
+                final ScriptWriter writer = new ScriptWriter(getOutputPath(), config.writeThreads, this::getCardImageUrl)
+                        .withTimingRules(config.timingRules)
+                        .trackedBy(phase);
+                writtenCount = writer.writeBundle(new ArrayList<>(scriptCards.values()), SCRIPTS_BUNDLE_FILE);
+                return writtenCount;
+            }
+
+            if (!config.incremental) {
+                FileUtils.deleteQuietly(getScriptsMissingFolder().toFile());
+                final ScriptWriter writer = new ScriptWriter(getScriptsMissingFolder(), config.writeThreads, this::getCardImageUrl)
+                        .withTimingRules(config.timingRules)
+                        .trackedBy(phase);
+                writtenCount = writer.write(new ArrayList<>(scriptCards.values()));
+                return writtenCount;
+            }
+
+            final Path manifestFile = getOutputPath().resolve(SCRIPTS_MANIFEST_FILE);
+            final ScriptManifest manifest = ScriptManifest.load(manifestFile);
+            final ScriptWriter writer = new ScriptWriter(getScriptsMissingFolder(), config.writeThreads, this::getCardImageUrl, manifest)
+                    .withTimingRules(config.timingRules)
+                    .trackedBy(phase);
+            final int count = writer.write(new ArrayList<>(scriptCards.values()));
+            manifest.removeStale(getScriptsMissingFolder());
+            manifest.save(manifestFile);
+            writtenCount = manifest.getWritten();
+            log.printf("-> Scripts added = %d, changed = %d, removed = %d, unchanged = %d (see %s).\n",
+                    manifest.getAdded(), manifest.getChanged(), manifest.getRemoved(), manifest.getUnchanged(), getFinalPath(manifestFile));
+            return count;
+        }
+
+        private String getCardImageUrl(final String scriptFilename, final String defaultUrl) {
+            for (int i = predefinedCardImages.size() - 1; i >= 0; i--) {
+                final String imageUrl = predefinedCardImages.get(i).get(scriptFilename);
+                if (imageUrl != null) {
+                    return imageUrl;
+                }
+            }
+            return defaultUrl;
+        }
+
+        /**
+         * @return the image url for a script in INVALID_IMAGE_SCRIPTS_FOLDER or null if
+         * there is no json card with the same script filename.
+         */
+        private String getScriptImageUrl(final String scriptFilename) {
+            String imageUrl = cards.getImageUrl(scriptFilename);
+            if (imageUrl == null) {
+                imageUrl = resolvedImageLinks.get(scriptFilename);
+            }
+            return imageUrl != null ? getCardImageUrl(scriptFilename, imageUrl) : null;
+        }
+
+        /**
+         *  sorted list of missing card names from Magarena.
+         */
+        private void loadMissingMagarenaCards() {
+            magarenaMissingCards.clear();
+            magarenaMissingCards.addAll(readMissingCardNames());
+        }
+
+        private void loadPredefinedCardImages() {
+            final File scryfallFile = getInputPath().resolve(SCRYFALL_IMAGES_FILE).toFile();
+            if (scryfallFile.exists()) {
+                final ImageOverrides scryfallImages = loadImageOverrides(scryfallFile, ScryfallImages::readInto);
+                predefinedCardImages.add(scryfallImages);
+                log.printf("-> Loaded %d image links (see %s).\n", scryfallImages.size(), scryfallFile);
+            }
+            if (getPredefinedImagesFile().exists()) {
+                predefinedCardImages.add(loadImageOverrides(getPredefinedImagesFile(), ImageOverrides.PROPERTIES_FILE));
+            }
+        }
+
+        private ImageOverrides loadImageOverrides(final File sourceFile, final ImageOverrides.Source source) {
+            final Path indexFile = getFolderPath(config.baseFolder.resolve(CACHE_FOLDER))
+                    .resolve(sourceFile.getName() + IMAGES_INDEX_EXTENSION);
+            try {
+                return ImageOverrides.load(sourceFile.toPath(), indexFile, source);
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+
+        private void updateScriptsImageProperty(final RunMetrics.Phase phase) {
+
+            final Path inputFolder = getFolderPath(getInputPath().resolve(INVALID_IMAGE_SCRIPTS_FOLDER));
+            final File[] scriptFiles = getSortedInvalidImageScriptFiles(inputFolder.toFile());
+            final int totalScripts = scriptFiles.length;
+
+            if (totalScripts > 0) {
+                final Path outputFolder = getFolderPath(getOutputPath().resolve(INVALID_IMAGE_SCRIPTS_FOLDER));
+
+                log.println("Running batch image link updater...");
+                log.printf("-> Updating %d script files in \"%s\"...\n",
+                        totalScripts, inputFolder
+                );
+
+                final ImageLinkUpdater updater = new ImageLinkUpdater(outputFolder, config.writeThreads, this::getScriptImageUrl)
+                        .trackedBy(phase);
+                final List<ImageLinkUpdater.Status> results = updater.update(
+                        Arrays.stream(scriptFiles).map(File::toPath).collect(Collectors.toList()));
+
+                final List<String> skippedFiles = new ArrayList<>();
+                int updateCount = 0;
+                int unchangedCount = 0;
+                for (int i = 0; i < scriptFiles.length; i++) {
+                    switch (results.get(i)) {
+                        case UPDATED:
+                            updateCount++;
+                            break;
+                        case UNCHANGED:
+                            unchangedCount++;
+                            break;
+                        case SKIPPED:
+                            skippedFiles.add(scriptFiles[i].getName());
+                            break;
+                        default:
+                            // already logged by the updater.
+                            break;
+                    }
+                }
+
+                phase.count("scripts", totalScripts);
+                phase.count("updated", updateCount);
+                phase.count("unchanged", unchangedCount);
+                phase.count("skipped", skippedFiles.size());
+
+                log.printf("-> Updated image property in %d script files in \"%s\" (%d already up to date).\n",
+                        updateCount, getFinalPath(outputFolder), unchangedCount
+                );
+
+                if (!skippedFiles.isEmpty()) {
+                    saveSkippedFilesLog(skippedFiles);
+                }
+
+            }
+        }
+
+        private void saveSkippedFilesLog(List<String> skippedFiles) {
+            final File textFile = getOutputPath().resolve(IMAGE_UPDATE_ERROR_LOG).toFile();
+            try (final PrintWriter writer = new PrintWriter(textFile)) {
+                skippedFiles.forEach(writer::println);
+            } catch (FileNotFoundException e) {
+                throw new RuntimeException(e);
+            }
+            log.printf("-> Failed to update image property in %d script files. (see %s).\n",
+                    skippedFiles.size(),
+                    getFinalPath(textFile.toPath())
+            );
+        }
+
+        private void logErrorDetails() {
+            final SortedMap<String, String> cardImageErrors = cards.getImageErrors();
+            if (!cardImageErrors.isEmpty()) {
+                final File textFile = getOutputPath().resolve(ERRORS_FILE).toFile();
+                try (final PrintWriter writer = new PrintWriter(textFile)) {
+                    cardImageErrors.values().forEach(writer::println);
+                } catch (FileNotFoundException e) {
+                    throw new RuntimeException(e);
+                }
+                log.printf("ERRORS = %d (see \\results\\%s)\n",
+                        cardImageErrors.size(), ERRORS_FILE);
+            }
+        }
+
+        private void saveMetrics(final RunMetrics metrics) {
+            final Path metricsFile = getOutputPath().resolve(METRICS_FILE);
+            try {
+                metrics.save(metricsFile);
+            } catch (IOException ex) {
+                System.err.println(ex);
+            }
+        }
+
+        private void logSetCodes(final Map<String, String> sortedSetCodes) {
+            final File textFile = getOutputPath().resolve(JSON_SETS_FILE).toFile();
+            try (final PrintWriter writer = new PrintWriter(textFile)) {
+                for (Entry<String, String> entrySet : sortedSetCodes.entrySet()) {
+                    final String key = entrySet.getKey();
+                    final String jsonSetCode = entrySet.getValue();
+                    final boolean isValidSetCode = isValidSetCode(jsonSetCode);
+                    final String setCode = getSetCode(jsonSetCode);
+                    if (isValidSetCode) {
+                        if (setCode.equalsIgnoreCase(jsonSetCode)) {
+                            writer.printf("%s\n", key);
+                        } else {
+                            writer.printf("%s -> %s\n", key, setCode);
+                        }
+                    }
+                }
+            } catch (FileNotFoundException e) {
+                throw new RuntimeException(e);
+            }
+//        log.printf("-> Processing %d sets in release date reverse order (see \\results\\%s)\n",
+//                sortedSetCodes.size(), JSON_SETS_FILE);
+        }
+
+        private Path getOutputPath() {
+            return getFolderPath(outputFolder);
+        }
+
+        /**
+         * @return where a file written by the run will be once it has replaced the OUTPUT_FOLDER.
+         */
+        private Path getFinalPath(final Path path) {
+            if (path.startsWith(outputFolder)) {
+                return config.baseFolder.resolve(OUTPUT_FOLDER).resolve(outputFolder.relativize(path));
+            }
+            return path;
+        }
+
+        /**
+         * @return where the scripts are written, SCRIPTS_MISSING_FOLDER or SCRIPTS_BUNDLE_FILE.
+         */
+        private Path getScriptsOutput() {
+            return config.scriptsBundle ? getOutputPath().resolve(SCRIPTS_BUNDLE_FILE) : getScriptsMissingFolder();
+        }
+
+        private Path getScriptsMissingFolder() {
+            return getFolderPath(getOutputPath().resolve(SCRIPTS_MISSING_FOLDER));
+        }
+
+        private File getMissingOrphansFile() {
+            return getOutputPath().resolve(MISSING_ORPHANS_FILE).toFile();
+        }
+    }
+
+    /**
+     * Runs in a staging folder which then replaces the OUTPUT_FOLDER (see
+     * {@link FileSysUtil#swapDirectory}). If the run fails the staging folder is deleted.
+     *
+     * @param fromOutput whether the run updates the OUTPUT_FOLDER rather than starting afresh.
+     */
+    private Result runStaged(final boolean fromOutput, final StagedRun run) throws IOException {
+        final Path outputFolder = config.baseFolder.resolve(OUTPUT_FOLDER).toAbsolutePath();
+        try (final Closeable lock = FileSysUtil.lock(config.baseFolder.resolve(OUTPUT_LOCK_FILE))) {
+            restoreOutputFolder(outputFolder);
+            // nothing else uses these folders while the lock is held.
+            FileSysUtil.deleteSiblingsInBackground(outputFolder,
+                    OUTPUT_STAGING_PREFIX, OUTPUT_PREVIOUS_PREFIX, OUTPUT_DELETING_PREFIX);
+            final Path staging = createStagingFolder(outputFolder, fromOutput);
+            final Result result;
+            try {
+                result = run.run(staging);
+            } catch (IOException | RuntimeException ex) {
+                FileSysUtil.deleteDirectoryInBackground(staging);
+                throw ex;
+            }
+            swapOutputFolder(staging, outputFolder);
+            return result;
+        }
+    }
+
+    /**
+     * Moves the previous OUTPUT_FOLDER back if a run stopped while swapping in its staging
+     * folder, after moving the OUTPUT_FOLDER away. There is only one previous folder at a time.
+     */
+    private void restoreOutputFolder(final Path outputFolder) throws IOException {
+        if (Files.exists(outputFolder)) {
+            return;
+        }
+        try (final DirectoryStream<Path> siblings = Files.newDirectoryStream(outputFolder.getParent(), OUTPUT_PREVIOUS_PREFIX + "*")) {
+            for (Path previous : siblings) {
+                if (Files.isDirectory(previous)) {
+                    FileSysUtil.move(previous, outputFolder);
+                    log.printf("-> Restored %s from %s.\n", OUTPUT_FOLDER, previous.getFileName());
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates a folder for the next run to write to. An update starts with the contents of
+     * the OUTPUT_FOLDER, a run in incremental mode with its scripts (and manifest), otherwise
+     * it is empty. The files in subfolders (the scripts) are hard links to those in the
+     * OUTPUT_FOLDER, which are either deleted or replaced when they change (see ScriptWriter),
+     * and the few other files are copied since they are rewritten in place.
+     */
+    private Path createStagingFolder(final Path outputFolder, final boolean fromOutput) throws IOException {
+        final Path staging = Files.createTempDirectory(outputFolder.getParent(), OUTPUT_STAGING_PREFIX);
+        if (!Files.isDirectory(outputFolder)) {
+            return staging;
+        }
+        if (fromOutput) {
+            try (final DirectoryStream<Path> entries = Files.newDirectoryStream(outputFolder)) {
+                for (Path entry : entries) {
+                    final Path target = staging.resolve(entry.getFileName().toString());
+                    if (Files.isDirectory(entry)) {
+                        FileSysUtil.linkDirectory(entry, target);
+                    } else {
+                        Files.copy(entry, target, StandardCopyOption.COPY_ATTRIBUTES);
+                    }
+                }
+            }
+        } else if (config.incremental && !config.scriptsBundle) {
+            final Path scriptsFolder = outputFolder.resolve(SCRIPTS_MISSING_FOLDER);
+            final Path manifestFile = outputFolder.resolve(SCRIPTS_MANIFEST_FILE);
+            if (Files.isDirectory(scriptsFolder) && Files.isRegularFile(manifestFile)) {
+                FileSysUtil.linkDirectory(scriptsFolder, staging.resolve(SCRIPTS_MISSING_FOLDER));
+                Files.copy(manifestFile, staging.resolve(SCRIPTS_MANIFEST_FILE));
+            }
+        }
+        return staging;
+    }
+
+    /**
+     * Replaces the OUTPUT_FOLDER with the folder built by the run, the previous
+     * OUTPUT_FOLDER is deleted in the background.
+     */
+    private void swapOutputFolder(final Path staging, final Path outputFolder) throws IOException {
+        final Path previous = newSiblingFolder(outputFolder, OUTPUT_PREVIOUS_PREFIX);
+        if (FileSysUtil.swapDirectory(staging, outputFolder, previous)) {
+            // renamed first so that a previous folder is always complete (see restoreOutputFolder).
+            final Path deleting = newSiblingFolder(outputFolder, OUTPUT_DELETING_PREFIX);
+            FileSysUtil.move(previous, deleting);
+            FileSysUtil.deleteDirectoryInBackground(deleting);
+        }
+    }
+
+    /**
+     * @return an unused name next to the folder which starts with the prefix.
+     */
+    private static Path newSiblingFolder(final Path folder, final String prefix) throws IOException {
+        final Path sibling = Files.createTempDirectory(folder.getParent(), prefix);
+        Files.delete(sibling);
+        return sibling;
+    }
+
+    /**
+     * Loads the card data extracted from JSON_FILE, either from memory or the card
+     * cache (if the json file is unchanged since it was loaded) or by parsing the file.
+     */
+    private CardDatabase loadCards(final RunMetrics metrics) throws IOException {
+
+        final File jsonFile = getJsonFile();
+        final String cacheKey = getCardCacheKey();
+        if (loadedCards != null && jsonFile.length() == loadedJsonSize && jsonFile.lastModified() == loadedJsonModified
+                && cacheKey.equals(loadedCacheKey)) {
+            log.println("-> Using card data loaded by the previous run.");
+            return loadedCards;
+        }
+        final long jsonSize = jsonFile.length();
+        final long jsonModified = jsonFile.lastModified();
+
+        final CardCache cache = config.cardCache
+                ? new CardCache(getCardCacheFile(), jsonFile.toPath(), cacheKey)
+                : null;
+
+        CardCache.Contents contents = null;
+        if (cache != null) {
+            final RunMetrics.Phase cachePhase = metrics.phase("cacheLoad").start();
+            try {
+                contents = cache.load();
+            } catch (IOException ex) {
+                System.err.println(ex);
+            }
+            cachePhase.count("cards", contents != null ? contents.getCards().size() : 0);
+            cachePhase.stop();
+        }
+
+        if (contents != null) {
+            log.printf("-> Loaded card data from cache (see %s).\n", getCardCacheFile());
+        } else {
+            final MessageDigest digest = ContentHash.newDigest();
+            contents = parseJsonData(jsonFile, digest, metrics);
+            if (cache != null) {
+                final RunMetrics.Phase cachePhase = metrics.phase("cacheSave").start();
+                try {
+                    cache.save(contents, ContentHash.toHex(digest.digest()));
+                } catch (IOException ex) {
+                    System.err.println(ex);
+                }
+                cachePhase.count("cards", contents.getCards().size());
+                cachePhase.stop();
+            }
+        }
+
+        final RunMetrics.Phase indexPhase = metrics.phase("cardIndex").start();
+        loadedCards = new CardDatabase(contents);
+        loadedJsonSize = jsonSize;
+        loadedJsonModified = jsonModified;
+        loadedCacheKey = cacheKey;
+        indexPhase.count("cards", loadedCards.size());
+        indexPhase.stop();
+        return loadedCards;
+    }
+
+    /**
+     * Parses the json feed using the google gson streaming api, updating {@code digest}
+     * with the content of the file.
+     * <p>
+     * The data is stored by card set so in order to get all cards you have to
+     * step through each set and pick out any new unique cards. The feed is read
+     * token by token and only the card fields used by {@link CardData} are kept
+     * for valid sets, everything else is skipped. Once a set has been read its
+     * card data is built on a separate thread (see extractThreads) and merged
+     * with the cards already seen so that the most recent printing of each card
+     * is retained regardless of the order in which sets are processed. With
+     * missingCardsOnly, only the cards which could match a missing card get full
+     * card data, the others just get their name and image url.
+     *
+     * @return the set codes sorted by release date and the selected cards in the
+     * same order as they would be found by stepping through each set in release
+     * date reverse order.
+     */
+    private CardCache.Contents parseJsonData(
+            final File jsonFile,
+            final MessageDigest digest,
+            final RunMetrics metrics) throws IOException {
+
+        // extraction is counted separately from parsing wherever it runs.
+        final RunMetrics.Phase parsePhase = metrics.phase("jsonParse").start();
+        final RunMetrics.Phase extractPhase = metrics.phase("cardExtraction").startTasks();
+
+        // every top-level set code in feed order mapped to its release date (if any).
+        final Map<String, String> setIndex = new LinkedHashMap<>();
+        final ConcurrentMap<String, CardCandidate> candidates = new ConcurrentHashMap<>();
+        final List<Future<?>> extractTasks = new ArrayList<>();
+        final ExecutorService executor = config.extractThreads > 1 ? newExtractExecutor(config.extractThreads) : null;
+        final ImageUrlResolver imageUrls = config.imageUrls;
+        final Predicate<String> isSelected = config.missingCardsOnly ? getMissingCardSelector() : null;
+        final CardData.SharedValues values = new CardData.SharedValues();
+
+        // Explicitly state UTF-8 otherwise will get strange characters if the default
+        // encoding is different (which it seems to be on Windows 7 at least).
+        try (final InputStream in = new DigestInputStream(new FileInputStream(jsonFile), digest);
+             final JsonReader reader =
+                new JsonReader(
+                        new BufferedReader(
+                                new InputStreamReader(in, "UTF-8")))) {
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                final String jsonSetCode = reader.nextName();
+                final JsonSetCards setCards = readJsonSet(reader, jsonSetCode, setIndex);
+                if (setCards != null) {
+                    extractPhase.count("sets", 1);
+                    extractPhase.count("printings", setCards.cards.size());
+                    final Runnable task = extractPhase.track(() -> extractCardData(setCards, candidates, imageUrls, isSelected, values));
+                    if (executor == null) {
+                        task.run();
+                    } else {
+                        extractTasks.add(executor.submit(task));
+                    }
+                }
+            }
+            reader.endObject();
+
+            // include any trailing content in the digest.
+            final byte[] remaining = new byte[8192];
+            while (in.read(remaining) > 0) {
+                // digest is updated as the stream is read.
+            }
+
+        } finally {
+            if (executor != null) {
+                executor.shutdown();
+            }
+        }
+
+        for (Future<?> task : extractTasks) {
+            try {
+                task.get();
+            } catch (InterruptedException | ExecutionException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        extractPhase.count("cards", candidates.size());
+        extractPhase.stop();
+
+        final List<CardCandidate> sortedCandidates = new ArrayList<>(candidates.values());
+        sortedCandidates.sort(CardCandidate.ORDER);
+        final List<String> keys = new ArrayList<>(sortedCandidates.size());
+        final List<CardData> cardList = new ArrayList<>(sortedCandidates.size());
+        for (CardCandidate candidate : sortedCandidates) {
+            keys.add(candidate.key);
+            cardList.add(candidate.card);
+        }
+
+        parsePhase.count("sets", setIndex.size());
+        parsePhase.count("bytes", jsonFile.length());
+        parsePhase.stop();
+
+        // list of set codes sorted by release date (map key) descending.
+        return new CardCache.Contents(getSetCodesSortedByReleaseDateDesc(setIndex), keys, cardList);
+    }
+
+    /**
+     * Bounded pool for building card data. When all threads are busy and the queue
+     * is full the reader thread extracts the set itself rather than reading ahead.
+     */
+    private static ExecutorService newExtractExecutor(final int threads) {
+        return new ThreadPoolExecutor(
+                threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * 2),
+                new ThreadPoolExecutor.CallerRunsPolicy()
+        );
+    }
+
+    /**
+     * Builds card data for each card in a set and merges it into {@code candidates}.
+     * Only the cards accepted by {@code isSelected} (all cards if null) get full card data.
+     */
+    private static void extractCardData(
+            final JsonSetCards setCards,
+            final ConcurrentMap<String, CardCandidate> candidates,
+            final ImageUrlResolver imageUrls,
+            final Predicate<String> isSelected,
+            final CardData.SharedValues values) {
+
+        final String setCode = getSetCode(setCards.jsonSetCode);
+        final ImageUrlResolver.SetImageUrls setImageUrls = imageUrls.forSet(setCards.jsonSetCode, setCode);
+        int index = 0;
+        for (Entry<String, JsonObject> entry : setCards.cards.entrySet()) {
+            if (isSelected != null && !isSelected.test(entry.getKey())) {
+                final CardData card = CardData.imageLinkOnly(entry.getValue(), setCode, setImageUrls, values);
+                candidates.merge(entry.getKey(), new CardCandidate(entry.getKey(), card, setCards.rank, index++), CardCandidate::newest);
+                continue;
+            }
+            final CardData card = new CardData(entry.getValue(), setCode, setImageUrls, values);
+            final CardCandidate candidate = new CardCandidate(entry.getKey(), card, setCards.rank, index++);
+            candidates.merge(entry.getKey(), candidate, CardCandidate::newest);
+        }
+    }
+
+    /**
+     * Reads a single set object, recording its code and release date in {@code setIndex}.
+     *
+     * @return the first valid printing of each card in the set or null if the set is
+     * invalid or has no release date.
+     */
+    private static JsonSetCards readJsonSet(
+            final JsonReader reader,
+            final String jsonSetCode,
+            final Map<String, String> setIndex) throws IOException {
+
+        final boolean isValidSet = isValidSetCode(jsonSetCode);
+        final Map<String, JsonObject> setCards = new LinkedHashMap<>();
+        String releaseDate = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            final String name = reader.nextName();
+            if ("releaseDate".equals(name) && reader.peek() == JsonToken.STRING) {
+                releaseDate = reader.nextString();
+            } else if ("cards".equals(name) && isValidSet) {
+                extractCardDataFromJson(reader, setCards);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        setIndex.put(jsonSetCode, releaseDate);
+        return isValidSet && releaseDate != null
+                ? new JsonSetCards(jsonSetCode, releaseDate + " " + jsonSetCode, setCards)
+                : null;
+    }
+
+    /**
+     * Reads the "cards" array of a set keeping the first valid printing of each card.
+     */
+    private static void extractCardDataFromJson(
+            final JsonReader reader,
+            final Map<String, JsonObject> setCards) throws IOException {
+
+        reader.beginArray();
+        while (reader.hasNext()) {
+            final JsonObject jsonCard = readJsonCard(reader);
+            final String key = CardData.getId(jsonCard);
+            if (!setCards.containsKey(key) && CardData.isValid(jsonCard)) {
+                setCards.put(key, jsonCard);
+            }
+        }
+        reader.endArray();
+    }
+
+    /**
+     * Reads a single card object keeping only the fields used by {@link CardData}.
+     */
+    private static JsonObject readJsonCard(final JsonReader reader) throws IOException {
+        final JsonParser parser = new JsonParser();
+        final JsonObject jsonCard = new JsonObject();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            final String name = reader.nextName();
+            if (CardData.JSON_FIELDS.contains(name)) {
+                jsonCard.add(name, parser.parse(reader));
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return jsonCard;
+    }
+
+    /**
+     * The valid cards read from a single set.
+     */
+    private static final class JsonSetCards {
+
+        private final String jsonSetCode;
+        private final String rank;
+        private final Map<String, JsonObject> cards;
+
+        private JsonSetCards(String jsonSetCode, String rank, Map<String, JsonObject> cards) {
+            this.jsonSetCode = jsonSetCode;
+            this.rank = rank;
+            this.cards = cards;
+        }
+    }
+
+    /**
+     * The most recent valid printing found so far for a given card.
+     */
+    private static final class CardCandidate {
+
+        // release date rank descending, then position within the set.
+        private static final Comparator<CardCandidate> ORDER =
+                Comparator.comparing((CardCandidate c) -> c.rank, Collections.reverseOrder())
+                        .thenComparingInt(c -> c.index);
+
+        private final String key;
+        private final CardData card;
+        private final String rank;
+        private final int index;
+
+        private CardCandidate(String key, CardData card, String rank, int index) {
+            this.key = key;
+            this.card = card;
+            this.rank = rank;
+            this.index = index;
+        }
+
+        private static CardCandidate newest(CardCandidate a, CardCandidate b) {
+            return ORDER.compare(a, b) <= 0 ? a : b;
+        }
+    }
+
+    private static String getSetCode(final String jsonSetCode) {
+        String key = jsonSetCode.toUpperCase(Locale.ENGLISH).trim();
+        return mtginfoSetsMap.containsKey(key) ? mtginfoSetsMap.get(key) : jsonSetCode;
+    }
+
+    private static Map<String, String> getMtgInfoSetsMap() {
+        final Map<String, String> map = new HashMap<>();
+        // Base Sets
+        map.put("LEA", "al");
+        map.put("LEB", "be");
+        map.put("2ED", "un");
+        map.put("3ED", "rv");
+        map.put("4ED", "4e");
+        map.put("5ED", "5e");
+        map.put("6ED", "6e");
+        map.put("7ED", "7e");
+        map.put("8ED", "8e");
+        map.put("9ED", "9e");
+        // Pre-Block sets
+        map.put("ARN", "an");
+        map.put("ATQ", "aq");
+        map.put("LEG", "lg");
+        map.put("DRK", "dk");
+        map.put("FEM", "fe");
+        map.put("HML", "hl");
+        // Block sets
+        map.put("ICE", "ia");
+        map.put("ALL", "ai");
+        map.put("CSP", "cs");
+        map.put("MIR", "mr");
+        map.put("VIS", "vi");
+        map.put("WTH", "wl");
+        map.put("TMP", "tp");
+        map.put("STH", "sh");
+        map.put("EXO", "ex");
+        map.put("USG", "us");
+        map.put("ULG", "ul");
+        map.put("UDS", "ud");
+        map.put("MMQ", "mm");
+        map.put("NMS", "ne");
+        map.put("PCY", "pr");
+        map.put("INV", "in");
+        map.put("PLS", "ps");
+        map.put("APC", "ap");
+        map.put("ODY", "od");
+        map.put("TOR", "tr");
+        map.put("JUD", "ju");
+        map.put("ONS", "on");
+        map.put("LGN", "le");
+        map.put("SCG", "sc");
+        map.put("MRD", "mi");
+        map.put("DST", "ds");
+        map.put("GPT", "gp");
+        map.put("DIS", "di");
+        map.put("TSP", "ts");
+        map.put("TSB", "tsts");
+        map.put("PLC", "pc");
+        map.put("LRW", "lw");
+        map.put("MOR", "mt");
+        map.put("CON", "cfx");
+        // Reprint Sets
+        map.put("CST", "cstd");
+        // Starter Sets
+        map.put("POR", "po");
+        map.put("PTK", "p3k");
+        map.put("S99", "st");
+        map.put("S00", "st2k");
+        // Media Inserts
+        map.put("pMEI", "mbp");
+        return map;
+    }
+
+    private static boolean isValidSetCode(final String setCode) {
+        return validSetCodes.contains(setCode) && !invalidSetCodes.contains(setCode);
+
+    }
+
+    private static SortedMap<String, String> getSetCodesSortedByReleaseDateDesc(final Map<String, String> setIndex) {
+        final SortedMap<String, String> sortedSetCodes = new TreeMap<>(Collections.reverseOrder());
+        for (Entry<String, String> entry : setIndex.entrySet()) {
+            final String setCode = entry.getKey();
+            final String setReleaseDate = entry.getValue();
+            if (setReleaseDate != null) {
+                final String key = setReleaseDate + " " + setCode;
+                sortedSetCodes.put(key, setCode);
+            }
+        }
+        return sortedSetCodes;
+    }
+
+    /*private void saveReplacementOracle(List<String> cardNames) {
+        // ensure unix style line endings.
+        System.setProperty("line.separator", "\n");
+
+            // get individual cards
+            for (String cardName : cardNames) {
+                final CardData cardData = cards.getCard(cardName);
+                // create file stream
+                if (cardData.hasOracleText() && cardData.getOracleText().contains("\\n")) {
+                    final String scriptFilename = cardData.getFilename();
+                    final Path filePath = getScriptsMissingFolder().resolve(scriptFilename);
+                    try (final PrintWriter writer = new PrintWriter(filePath.toString(), "UTF-8")) {
+                        writer.println("oracle="+cardData.getOracleText());
+                    } catch (FileNotFoundException | UnsupportedEncodingException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            }
+    }*/
+
+    private Path getInputPath() {
+        return getFolderPath(config.baseFolder.resolve(INPUT_FOLDER));
+    }
+
+    private Path getCardCacheFile() {
+        return getFolderPath(config.baseFolder.resolve(CACHE_FOLDER)).resolve(CARD_CACHE_FILE);
+    }
+
+    /**
+     * Identifies the settings used to extract the card data, the card cache is
+     * not used if any of these change: the valid and invalid set codes, the mtginfo
+     * set map, the image urls and (with missingCardsOnly) the missing card names.
+     * Settings which only affect the scripts (eg. incremental) are not included.
+     */
+    private String getCardCacheKey() {
+        return ContentHash.of(
+                new TreeSet<>(validSetCodes) + "|" +
+                new TreeSet<>(invalidSetCodes) + "|" +
+                new TreeMap<>(mtginfoSetsMap) + "|" +
+                config.imageUrls +
+                (config.missingCardsOnly ? "|" + new TreeSet<>(readMissingCardNames()) : "")
+        );
+    }
+
+    /**
+     * @return whether a json card name could match a card in MISSING_CARDS_FILE, either
+     * exactly or by normalized name (see resolveMissingCardOrphans).
+     */
+    private Predicate<String> getMissingCardSelector() {
+        final Set<String> cardNames = new HashSet<>(readMissingCardNames());
+        final Set<String> normalizedNames = new HashSet<>();
+        for (String cardName : cardNames) {
+            normalizedNames.add(CardNameIndex.normalize(cardName));
+        }
+        return cardName -> cardNames.contains(cardName) || normalizedNames.contains(CardNameIndex.normalize(cardName));
+    }
+
+    private List<String> readMissingCardNames() {
+        try {
+            final Path filePath = getMissingCardsFile().toPath();
+            return Files.readAllLines(filePath, Charset.defaultCharset()).stream().map(String::trim).collect(Collectors.toList());
+        } catch (final IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private File getJsonFile() {
+        return getInputPath().resolve(JSON_FILE).toFile();
+    }
+
+    private File getMissingCardsFile() {
+        return getInputPath().resolve(MISSING_CARDS_FILE).toFile();
+    }
+
+    private File getPredefinedImagesFile() {
+        return getInputPath().resolve(PREDEFINED_IMAGES_FILE).toFile();
+    }
+
+    private static Path getFolderPath(final Path folderPath) {
+        if (!Files.isDirectory(folderPath)) {
+            try {
+                Files.createDirectory(folderPath);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return folderPath;
+    }
+
+    private static File[] getSortedInvalidImageScriptFiles(final File scriptsFolder) {
+        final File[] files = scriptsFolder.listFiles((dir, name) -> name.toLowerCase(Locale.ENGLISH).endsWith(".txt"));
+        Arrays.sort(files);
+        return files;
+    }
+
+}
@@ -0,0 +1,122 @@
+package mtgjson.reader;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Records a content hash of each generated script, so that a later run only needs
+ * to write the scripts that changed.
+ * <p>
+ * Each line of the manifest file is {@code <script filename> TAB <script hash>}.
+ */
+final class ScriptManifest {
+
+    // script filename -> script hash.
+    private final Map<String, String> previous;
+    private final ConcurrentMap<String, String> current = new ConcurrentHashMap<>();
+
+    private final AtomicInteger added = new AtomicInteger();
+    private final AtomicInteger changed = new AtomicInteger();
+    private final AtomicInteger unchanged = new AtomicInteger();
+    private int removed;
+
+    private ScriptManifest(final Map<String, String> previous) {
+        this.previous = previous;
+    }
+
+    /**
+     * Loads the manifest saved by the previous run (empty if there is none).
+     */
+    static ScriptManifest load(final Path manifestFile) throws IOException {
+        final Map<String, String> entries = new HashMap<>();
+        if (Files.exists(manifestFile)) {
+            for (String line : Files.readAllLines(manifestFile, StandardCharsets.UTF_8)) {
+                final String[] fields = line.split("\t");
+                if (fields.length == 2) {
+                    entries.put(fields[0], fields[1]);
+                }
+            }
+        }
+        return new ScriptManifest(entries);
+    }
+
+    /**
+     * Records the script generated for a card.
+     *
+     * @return true if the script file needs to be written.
+     */
+    boolean update(final String scriptFilename, final byte[] script, final Path scriptFile) {
+        final String scriptHash = ContentHash.of(script);
+        current.put(scriptFilename, scriptHash);
+        final String old = previous.get(scriptFilename);
+        if (old == null) {
+            added.incrementAndGet();
+            return true;
+        }
+        if (old.equals(scriptHash) && Files.exists(scriptFile)) {
+            unchanged.incrementAndGet();
+            return false;
+        }
+        changed.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Deletes any script in the folder which was not generated by this run, including
+     * those left by a run which was not incremental (and so not in the manifest).
+     */
+    void removeStale(final Path scriptsFolder) throws IOException {
+        try (final DirectoryStream<Path> scriptFiles = Files.newDirectoryStream(scriptsFolder, "*.txt")) {
+            for (Path scriptFile : scriptFiles) {
+                if (!current.containsKey(scriptFile.getFileName().toString())) {
+                    Files.deleteIfExists(scriptFile);
+                    removed++;
+                }
+            }
+        }
+    }
+
+    void save(final Path manifestFile) throws IOException {
+        final StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String> entry : new TreeMap<>(current).entrySet()) {
+            sb.append(entry.getKey()).append('\t').append(entry.getValue()).append('\n');
+        }
+        final Path tempFile = manifestFile.resolveSibling(manifestFile.getFileName() + ".tmp");
+        Files.write(tempFile, sb.toString().getBytes(StandardCharsets.UTF_8));
+        Files.move(tempFile, manifestFile, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    int getAdded() {
+        return added.get();
+    }
+
+    int getChanged() {
+        return changed.get();
+    }
+
+    int getRemoved() {
+        return removed;
+    }
+
+    /**
+     * @return the number of script files which need to be written, those added or changed.
+     */
+    int getWritten() {
+        return added.get() + changed.get();
+    }
+
+    int getUnchanged() {
+        return unchanged.get();
+    }
+
+}
@@ -0,0 +1,299 @@
+package mtgjson.reader;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Compares existing Magarena script files (eg. the "scripts" or "scripts_missing" folder)
+ * against the scripts the generator would create for the same cards, counting the
+ * mismatches for each property the generator writes.
+ * <p>
+ * The scripts are read and parsed in parallel, one batch per thread. Each script is
+ * matched to a card by its "name" property (exactly or by normalized name) and the
+ * generated script is rendered and parsed the same way, so both sides are compared
+ * as property values rather than text. Each thread counts into its own {@link Report}
+ * and the reports are merged in script order.
+ */
+public final class ScriptValidator {
+
+    // The properties written by ScriptWriter.render, "value" is always the same placeholder.
+    static final List<String> FIELDS = Collections.unmodifiableList(Arrays.asList(
+            "name", "image", "rarity", "type", "subtype", "color", "cost", "pt", "loyalty",
+            "ability", "effect", "timing", "enchant", "oracle"
+    ));
+
+    private final CardDatabase cards;
+    private final CardNameIndex nameIndex;
+    private final TimingRules timingRules;
+    private final int threads;
+
+    ScriptValidator(final CardDatabase cards, final TimingRules timingRules, final int threads) {
+        this.cards = cards;
+        this.nameIndex = new CardNameIndex(cards.getCardNames());
+        this.timingRules = timingRules;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * The properties of a script file, read with {@link Properties} as Magarena reads
+     * them. A value continued on the next line (eg. the abilities of a card, which
+     * the generator writes one per line) is joined up, the leading whitespace of each
+     * continuation line is dropped.
+     */
+    static final class Script {
+
+        private final String filename;
+        private final Properties properties;
+
+        private Script(final String filename, final Properties properties) {
+            this.filename = filename;
+            this.properties = properties;
+        }
+
+        static Script parse(final String filename, final String script) {
+            final Properties properties = new Properties();
+            try {
+                properties.load(new StringReader(script));
+            } catch (IOException | IllegalArgumentException ex) {
+                throw new IllegalArgumentException("Invalid script " + filename + ": " + ex.getMessage(), ex);
+            }
+            return new Script(filename, properties);
+        }
+
+        String getFilename() {
+            return filename;
+        }
+
+        /**
+         * @return the value of the property or null if the script does not have it.
+         */
+        String get(final String key) {
+            return properties.getProperty(key);
+        }
+    }
+
+    /**
+     * The counts for a set of validated scripts.
+     */
+    public static final class Report {
+
+        private int scripts;
+        private int unmatched;
+        private int failed;
+
+        // per field, the script has a different value / is missing the property / has a property the generator does not write.
+        private final int[] different = new int[FIELDS.size()];
+        private final int[] missing = new int[FIELDS.size()];
+        private final int[] extra = new int[FIELDS.size()];
+
+        // "script filename: field: expected | actual" for each mismatch.
+        private final List<String> mismatches = new ArrayList<>();
+
+        private void add(final Report other) {
+            scripts += other.scripts;
+            unmatched += other.unmatched;
+            failed += other.failed;
+            for (int i = 0; i < different.length; i++) {
+                different[i] += other.different[i];
+                missing[i] += other.missing[i];
+                extra[i] += other.extra[i];
+            }
+            mismatches.addAll(other.mismatches);
+        }
+
+        public int getScripts() {
+            return scripts;
+        }
+
+        /**
+         * @return the number of scripts whose card is not in the json feed.
+         */
+        public int getUnmatched() {
+            return unmatched;
+        }
+
+        /**
+         * @return the number of scripts which could not be read or parsed.
+         */
+        public int getFailed() {
+            return failed;
+        }
+
+        /**
+         * @return the number of compared scripts where the field is not the same.
+         */
+        public int getMismatches(final String field) {
+            final int i = FIELDS.indexOf(field);
+            return different[i] + missing[i] + extra[i];
+        }
+
+        public List<String> getMismatches() {
+            return mismatches;
+        }
+
+        public void print(final PrintStream out) {
+            out.printf("Scripts = %d, compared = %d, unmatched = %d, failed = %d.\n",
+                    scripts, scripts - unmatched - failed, unmatched, failed);
+            out.printf("%-10s %10s %10s %10s\n", "field", "different", "missing", "extra");
+            for (int i = 0; i < FIELDS.size(); i++) {
+                out.printf("%-10s %10d %10d %10d\n", FIELDS.get(i), different[i], missing[i], extra[i]);
+            }
+        }
+    }
+
+    /**
+     * Validates the scripts (*.txt) in each of the folders.
+     */
+    public Report validate(final List<Path> folders) throws IOException {
+        final List<Path> scriptFiles = new ArrayList<>();
+        for (Path folder : folders) {
+            try (final DirectoryStream<Path> files = Files.newDirectoryStream(folder, "*.txt")) {
+                final List<Path> folderFiles = new ArrayList<>();
+                files.forEach(folderFiles::add);
+                Collections.sort(folderFiles);
+                scriptFiles.addAll(folderFiles);
+            }
+        }
+        return validateFiles(scriptFiles);
+    }
+
+    private Report validateFiles(final List<Path> scriptFiles) {
+        final int count = scriptFiles.size();
+        if (threads == 1 || count < threads) {
+            return validateBatch(scriptFiles);
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<Report>> batches = new ArrayList<>();
+            final int batchSize = (count + threads - 1) / threads;
+            for (int i = 0; i < count; i += batchSize) {
+                final List<Path> batch = scriptFiles.subList(i, Math.min(count, i + batchSize));
+                batches.add(executor.submit(() -> validateBatch(batch)));
+            }
+            final Report report = new Report();
+            for (Future<Report> batch : batches) {
+                report.add(batch.get());
+            }
+            return report;
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException(e);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private Report validateBatch(final List<Path> scriptFiles) {
+        final Report report = new Report();
+        final StringBuilder sb = new StringBuilder(1024);
+        for (Path scriptFile : scriptFiles) {
+            report.scripts++;
+            final String filename = scriptFile.getFileName().toString();
+            final Script script;
+            try {
+                script = Script.parse(filename, new String(Files.readAllBytes(scriptFile), StandardCharsets.UTF_8));
+            } catch (IOException | IllegalArgumentException ex) {
+                System.err.println(ex);
+                report.failed++;
+                continue;
+            }
+            final CardData card = findCard(script.get("name"));
+            if (card == null) {
+                report.unmatched++;
+                continue;
+            }
+            sb.setLength(0);
+            ScriptWriter.render(card, card.getImageUrl(), timingRules, sb);
+            compare(Script.parse(filename, sb.toString()), script, report);
+        }
+        return report;
+    }
+
+    /**
+     * @return the card with the given name, renamed if it only matches by normalized name, or null if there is none.
+     */
+    private CardData findCard(final String cardName) {
+        if (cardName == null) {
+            return null;
+        }
+        final CardData card = cards.getCard(cardName);
+        if (card != null) {
+            return card;
+        }
+        final String jsonName = nameIndex.findNormalized(cardName);
+        return jsonName != null ? cards.getCard(jsonName).withCardName(cardName) : null;
+    }
+
+    private static void compare(final Script expected, final Script actual, final Report report) {
+        for (int i = 0; i < FIELDS.size(); i++) {
+            final String field = FIELDS.get(i);
+            final String expectedValue = expected.get(field);
+            final String actualValue = actual.get(field);
+            if (expectedValue == null ? actualValue == null : expectedValue.equals(actualValue)) {
+                continue;
+            }
+            if (expectedValue == null) {
+                report.extra[i]++;
+            } else if (actualValue == null) {
+                report.missing[i]++;
+            } else {
+                report.different[i]++;
+            }
+            report.mismatches.add(String.format("%s: %s: %s | %s", actual.getFilename(), field, expectedValue, actualValue));
+        }
+    }
+
+    /**
+     * Usage: ScriptValidator /path/to/Magarena/scripts [more script folders...]
+     * <p>
+     * The cards are loaded the same way as {@link MtgJsonReader} (from the INPUT and
+     * CACHE folders in the current folder), as is -DtimingRules. Set -Dmismatches=file to list every mismatch.
+     */
+    public static void main(String[] args) throws IOException {
+        final long start_time = System.currentTimeMillis();
+        final ScriptGenerator generator = new ScriptGenerator(ScriptGenerator.Config.builder()
+                .cardCache(Boolean.parseBoolean(System.getProperty("cardCache", "true")))
+                .imageUrls(ImageUrlResolver.parseChain(System.getProperty("imageUrls", ImageUrlResolver.DEFAULT_CHAIN)))
+                .extractThreads(Integer.getInteger("extractThreads", Runtime.getRuntime().availableProcessors()))
+                .build());
+        final CardDatabase cards = generator.loadCards();
+        final long load_time = System.currentTimeMillis();
+
+        final List<Path> folders = new ArrayList<>();
+        for (String arg : args) {
+            folders.add(Paths.get(arg));
+        }
+        final int threads = Integer.getInteger("threads", Runtime.getRuntime().availableProcessors());
+        final TimingRules timingRules = ScriptGenerator.Config.getTimingRules(System.getProperty("timingRules"));
+        final Report report = new ScriptValidator(cards, timingRules, threads).validate(folders);
+        final double seconds = (System.currentTimeMillis() - load_time) / 1000.0;
+        report.print(System.out);
+
+        final String mismatchesFile = System.getProperty("mismatches");
+        if (mismatchesFile != null) {
+            try (final PrintWriter writer = new PrintWriter(mismatchesFile, "UTF-8")) {
+                report.getMismatches().forEach(writer::println);
+            }
+            System.out.printf("%d mismatches listed in %s.\n", report.getMismatches().size(), mismatchesFile);
+        }
+        System.out.printf("Validated %d scripts in %.1f seconds (%.0f scripts/sec, cards loaded in %.1f seconds).\n",
+                report.getScripts(), seconds, report.getScripts() / Math.max(seconds, 1e-3),
+                (load_time - start_time) / 1000.0);
+    }
+
+}
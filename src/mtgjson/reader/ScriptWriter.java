@@ -0,0 +1,243 @@
+package mtgjson.reader;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Renders card data as Magarena script files and writes them to a folder, either
+ * as separate files or as a single zip file (see {@link #writeBundle}).
+ * <p>
+ * The cards are split into one batch per thread. Each thread renders its scripts
+ * into a single reusable buffer (always using unix style line endings) and writes
+ * each one out in a single call. If a {@link ScriptManifest} is given then scripts
+ * which are unchanged since the previous run are not rewritten, and changed scripts
+ * are replaced (written to a temporary file which is moved over the script) since
+ * the previous scripts may be hard links to those of the previous output.
+ */
+final class ScriptWriter {
+
+    // modified time of every bundle entry so that the same scripts give the same bundle.
+    private static final long BUNDLE_ENTRY_TIME = 315532800000L; // 1980-01-01 UTC
+
+    private final Path folder;
+    private final int threads;
+
+    // (script filename, default image url) -> image url written to the script.
+    private final BiFunction<String, String, String> imageUrls;
+
+    // optional, null if every script should be written.
+    private final ScriptManifest manifest;
+
+    // optional, the metrics phase the writer threads are counted in.
+    private RunMetrics.Phase phase;
+
+    private TimingRules timingRules = TimingRules.DEFAULT;
+
+    ScriptWriter(final Path folder, final int threads, final BiFunction<String, String, String> imageUrls) {
+        this(folder, threads, imageUrls, null);
+    }
+
+    ScriptWriter(
+            final Path folder,
+            final int threads,
+            final BiFunction<String, String, String> imageUrls,
+            final ScriptManifest manifest) {
+        this.folder = folder;
+        this.threads = Math.max(1, threads);
+        this.imageUrls = imageUrls;
+        this.manifest = manifest;
+    }
+
+    /**
+     * Adds the CPU time and allocations of the writer threads to the given metrics phase.
+     */
+    ScriptWriter trackedBy(final RunMetrics.Phase metricsPhase) {
+        this.phase = metricsPhase;
+        return this;
+    }
+
+    /**
+     * Uses the given rules for the timing property of each script.
+     */
+    ScriptWriter withTimingRules(final TimingRules rules) {
+        this.timingRules = rules;
+        return this;
+    }
+
+    /**
+     * Writes a script file for each card, returning the number of cards processed.
+     * Each card should have a unique script filename.
+     */
+    int write(final List<CardData> cards) {
+        inBatches(cards.size(), (from, to) -> writeBatch(cards.subList(from, to)));
+        return cards.size();
+    }
+
+    /**
+     * Writes the scripts for all the cards as the entries of a single zip file in the folder,
+     * returning the number of cards processed. Each card should have a unique script filename.
+     * <p>
+     * The scripts are rendered in batches by the writer threads, then compressed and written
+     * in script filename order through one buffered stream so that the same cards always give
+     * the same file. The file is written to a temporary file first so an interrupted run never
+     * leaves a partial bundle.
+     */
+    int writeBundle(final List<CardData> cards, final String bundleFilename) throws IOException {
+        final List<CardData> sortedCards = new ArrayList<>(cards);
+        sortedCards.sort(Comparator.comparing(CardData::getFilename));
+        final byte[][] scripts = new byte[sortedCards.size()][];
+        inBatches(sortedCards.size(), (from, to) -> {
+            final StringBuilder sb = new StringBuilder(1024);
+            for (int i = from; i < to; i++) {
+                scripts[i] = renderScript(sortedCards.get(i), sb);
+            }
+        });
+
+        final Path bundleFile = folder.resolve(bundleFilename);
+        final Path tempFile = bundleFile.resolveSibling(bundleFilename + ".tmp");
+        try (final ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile), 1 << 16))) {
+            for (int i = 0; i < scripts.length; i++) {
+                final ZipEntry entry = new ZipEntry(sortedCards.get(i).getFilename());
+                entry.setTime(BUNDLE_ENTRY_TIME);
+                out.putNextEntry(entry);
+                out.write(scripts[i]);
+                out.closeEntry();
+            }
+        }
+        Files.move(tempFile, bundleFile, StandardCopyOption.REPLACE_EXISTING);
+        return cards.size();
+    }
+
+    /**
+     * A range of card indexes processed by a single thread.
+     */
+    private interface Batch {
+        void run(int from, int to);
+    }
+
+    /**
+     * Splits {@code count} cards into one batch per thread, on the calling thread if there are too few cards.
+     */
+    private void inBatches(final int count, final Batch task) {
+        if (threads == 1 || count < threads) {
+            task.run(0, count);
+            return;
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<?>> batches = new ArrayList<>();
+            final int batchSize = (count + threads - 1) / threads;
+            for (int i = 0; i < count; i += batchSize) {
+                final int from = i;
+                final int to = Math.min(count, i + batchSize);
+                final Runnable batch = () -> task.run(from, to);
+                batches.add(executor.submit(phase != null ? phase.track(batch) : batch));
+            }
+            for (Future<?> batch : batches) {
+                batch.get();
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException(e);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private byte[] renderScript(final CardData card, final StringBuilder sb) {
+        sb.setLength(0);
+        final String scriptFilename = card.getFilename();
+        render(card, imageUrls.apply(scriptFilename, card.getImageUrl()), timingRules, sb);
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void writeBatch(final List<CardData> cards) {
+        final StringBuilder sb = new StringBuilder(1024);
+        for (CardData card : cards) {
+            final String scriptFilename = card.getFilename();
+            final byte[] script = renderScript(card, sb);
+            final Path scriptFile = folder.resolve(scriptFilename);
+            if (manifest != null && !manifest.update(scriptFilename, script, scriptFile)) {
+                continue;
+            }
+            try {
+                if (manifest != null) {
+                    final Path tempFile = scriptFile.resolveSibling(scriptFilename + ".tmp");
+                    Files.write(tempFile, script);
+                    Files.move(tempFile, scriptFile, StandardCopyOption.REPLACE_EXISTING);
+                } else {
+                    Files.write(scriptFile, script);
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * Appends the script file contents for the given card to {@code sb}.
+     */
+    static void render(final CardData cardData, final String imageUrl, final StringBuilder sb) {
+        render(cardData, imageUrl, TimingRules.DEFAULT, sb);
+    }
+
+    /**
+     * Appends the script file contents for the given card to {@code sb}, using the given timing rules.
+     */
+    static void render(final CardData cardData, final String imageUrl, final TimingRules timingRules, final StringBuilder sb) {
+        line(sb, "name=", cardData.getCardName());
+        line(sb, "image=", imageUrl);
+        line(sb, "value=", "2.500");
+        line(sb, "rarity=", StringUtils.replace(cardData.getRarity(), "S", "R"));
+        line(sb, "type=", cardData.getType());
+        if (cardData.hasSubType()) {
+            line(sb, "subtype=", cardData.getSubType());
+        }
+        if (cardData.hasColor()) {
+            line(sb, "color=", cardData.getColor());
+        }
+        if (cardData.hasManaCost()) {
+            line(sb, "cost=", cardData.getManaCost());
+        }
+        if (cardData.hasPT()) {
+            sb.append("pt=").append(cardData.getPower()).append('/').append(cardData.getToughness()).append('\n');
+        }
+        if (cardData.hasLoyalty()) {
+            line(sb, "loyalty=", cardData.getLoyalty());
+        }
+        if (cardData.hasAbilityText()) {
+            line(sb, "ability=", cardData.getAbilityText());
+        }
+        if (cardData.hasEffectText()) {
+            line(sb, "effect=", cardData.getEffectText());
+        }
+        line(sb, "timing=", cardData.getTiming(timingRules));
+        if (cardData.hasSubType()) {
+            if (cardData.getSubType().contains("Aura")) {
+                line(sb, "enchant=", cardData.getEnchant());
+            }
+        }
+        line(sb, "oracle=", cardData.hasOracleText() ? cardData.getOracleText() : "NONE");
+    }
+
+    private static void line(final StringBuilder sb, final String property, final String value) {
+        // ensure unix style line endings.
+        sb.append(property).append(value).append('\n');
+    }
+
+}
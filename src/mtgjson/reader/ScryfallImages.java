@@ -0,0 +1,207 @@
+package mtgjson.reader;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Reads the image link of each card from a Scryfall bulk data file
+ * (see https://scryfall.com/docs/api/bulk-data), eg. "scryfall-default-cards.json".
+ * <p>
+ * The file is streamed so only the preferred printing of each card is kept in memory.
+ * A paper printing is preferred to a digital only printing, then a high resolution
+ * scan, then the most recent release. The faces of a double faced card are linked
+ * to their own images.
+ */
+public final class ScryfallImages {
+
+    /**
+     * The image for a single printing of a card.
+     */
+    private static final class Printing {
+
+        private final String imageUrl;
+        private final boolean isDigital;
+        private final boolean isHighRes;
+        private final String releasedAt;
+
+        private Printing(String imageUrl, boolean isDigital, boolean isHighRes, String releasedAt) {
+            this.imageUrl = imageUrl;
+            this.isDigital = isDigital;
+            this.isHighRes = isHighRes;
+            this.releasedAt = releasedAt;
+        }
+
+        private boolean isPreferredTo(final Printing other) {
+            if (isDigital != other.isDigital) {
+                return !isDigital;
+            }
+            if (isHighRes != other.isHighRes) {
+                return isHighRes;
+            }
+            return releasedAt.compareTo(other.releasedAt) > 0;
+        }
+    }
+
+    private ScryfallImages() {}
+
+    /**
+     * @return script filename -> image url of the preferred printing of each card.
+     */
+    static Map<String, String> read(final Path bulkFile) throws IOException {
+        final Map<String, Printing> printings = new HashMap<>();
+        try (final JsonReader reader = new JsonReader(
+                new BufferedReader(
+                        new InputStreamReader(Files.newInputStream(bulkFile), StandardCharsets.UTF_8)))) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                readCard(reader, printings);
+            }
+            reader.endArray();
+        }
+        final Map<String, String> imageUrls = new HashMap<>(printings.size() * 2);
+        for (Map.Entry<String, Printing> entry : printings.entrySet()) {
+            imageUrls.put(entry.getKey(), entry.getValue().imageUrl);
+        }
+        return imageUrls;
+    }
+
+    /**
+     * Adds the image url of the preferred printing of each card to {@code links}.
+     */
+    static void readInto(final ImageOverrides links, final Path bulkFile) throws IOException {
+        for (Map.Entry<String, String> entry : read(bulkFile).entrySet()) {
+            links.put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Reads a single card object keeping only the fields used to choose its image.
+     */
+    private static void readCard(final JsonReader reader, final Map<String, Printing> printings) throws IOException {
+        String name = null;
+        String imageUrl = null;
+        boolean isDigital = false;
+        boolean isHighRes = false;
+        String releasedAt = "";
+        // face name -> image url.
+        final Map<String, String> faces = new HashMap<>();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            final String field = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.skipValue();
+            } else if ("name".equals(field)) {
+                name = reader.nextString();
+            } else if ("image_uris".equals(field)) {
+                imageUrl = readImageUrl(reader);
+            } else if ("digital".equals(field)) {
+                isDigital = reader.nextBoolean();
+            } else if ("highres_image".equals(field)) {
+                isHighRes = reader.nextBoolean();
+            } else if ("released_at".equals(field)) {
+                releasedAt = reader.nextString();
+            } else if ("card_faces".equals(field)) {
+                readFaces(reader, faces);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (name != null && imageUrl != null) {
+            addPrinting(printings, name, new Printing(imageUrl, isDigital, isHighRes, releasedAt));
+        } else if (imageUrl == null) {
+            // each face of a double faced card has its own image.
+            for (Map.Entry<String, String> face : faces.entrySet()) {
+                addPrinting(printings, face.getKey(), new Printing(face.getValue(), isDigital, isHighRes, releasedAt));
+            }
+        }
+    }
+
+    private static void readFaces(final JsonReader reader, final Map<String, String> faces) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String name = null;
+            String imageUrl = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                final String field = reader.nextName();
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.skipValue();
+                } else if ("name".equals(field)) {
+                    name = reader.nextString();
+                } else if ("image_uris".equals(field)) {
+                    imageUrl = readImageUrl(reader);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            if (name != null && imageUrl != null) {
+                faces.put(name, imageUrl);
+            }
+        }
+        reader.endArray();
+    }
+
+    /**
+     * @return the "normal" image url without its query string or null if there is none.
+     */
+    private static String readImageUrl(final JsonReader reader) throws IOException {
+        String imageUrl = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            final String field = reader.nextName();
+            if ("normal".equals(field) && reader.peek() == JsonToken.STRING) {
+                imageUrl = reader.nextString();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (imageUrl == null || imageUrl.isEmpty()) {
+            return null;
+        }
+        final int query = imageUrl.indexOf('?');
+        return query < 0 ? imageUrl : imageUrl.substring(0, query);
+    }
+
+    private static void addPrinting(final Map<String, Printing> printings, final String cardName, final Printing printing) {
+        final String scriptFilename = CardData.getFilename(cardName);
+        final Printing current = printings.get(scriptFilename);
+        if (current == null || printing.isPreferredTo(current)) {
+            printings.put(scriptFilename, printing);
+        }
+    }
+
+    /**
+     * Creates a CardImages.txt file from a Scryfall bulk data file.
+     * <p>
+     * Usage: ScryfallImages scryfall-default-cards.json CardImages.txt
+     */
+    public static void main(String[] args) throws IOException {
+        final long start_time = System.currentTimeMillis();
+        final Map<String, String> imageUrls = read(Paths.get(args[0]));
+        try (final PrintWriter writer = new PrintWriter(Files.newBufferedWriter(Paths.get(args[1]), StandardCharsets.ISO_8859_1))) {
+            for (Map.Entry<String, String> entry : new TreeMap<>(imageUrls).entrySet()) {
+                writer.printf("%s=%s\n", entry.getKey(), entry.getValue());
+            }
+        }
+        System.out.printf("Saved %d image links to %s in %.1f seconds.\n",
+                imageUrls.size(), args[1], (System.currentTimeMillis() - start_time) / 1000.0);
+    }
+
+}
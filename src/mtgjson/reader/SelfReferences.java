@@ -0,0 +1,107 @@
+package mtgjson.reader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Replaces the references a card makes to itself in its text with "SN", except where
+ * the text names a card ("named ..."), eg. "search for a card named SN" is left as is.
+ * <p>
+ * A card refers to itself by its full name, a legendary card also by the part of its
+ * name before the comma ("Gisela" for "Gisela, Blade of Goldnight") and the text of each
+ * half of a split card by the name of that half ("Fire" in the text of Fire for
+ * "Fire // Ice", but not in the text of Ice). All the variants are found in one {@link AhoCorasick} scan
+ * and the longest of those starting first is replaced, so no regex is used. The short
+ * variants are only replaced as whole words. The full name is replaced wherever it
+ * occurs, which gives the same text as replacing it with {@code String.replace}.
+ */
+final class SelfReferences {
+
+    private static final String SN = "SN";
+    private static final String NAMED = "named ";
+    private static final String SPLIT_SEPARATOR = " // ";
+
+    // shorter names are too likely to be part of other text (eg. "{X}").
+    private static final int MIN_SHORT_NAME_LENGTH = 3;
+
+    private final AhoCorasick names;
+
+    // per variant, whether it is only replaced as a whole word.
+    private final boolean[] wholeWord;
+
+    private SelfReferences(final List<String> variants, final boolean[] wholeWord) {
+        this.names = new AhoCorasick(variants);
+        this.wholeWord = wholeWord;
+    }
+
+    /**
+     * @param cardName the full name of the card in the json feed.
+     * @param faceName the name of the half of a split card whose text is replaced or null.
+     * @param superTypes the comma separated super types of the card or null if it has none.
+     */
+    static SelfReferences of(final String cardName, final String faceName, final String superTypes) {
+        final List<String> variants = new ArrayList<>();
+        variants.add(cardName);
+        if (faceName != null && cardName.contains(SPLIT_SEPARATOR)) {
+            addShortName(variants, faceName.trim());
+        }
+        final int comma = cardName.indexOf(", ");
+        if (comma > 0 && superTypes != null && superTypes.contains("Legendary")) {
+            addShortName(variants, cardName.substring(0, comma));
+        }
+        final boolean[] wholeWord = new boolean[variants.size()];
+        Arrays.fill(wholeWord, 1, wholeWord.length, true);
+        return new SelfReferences(variants, wholeWord);
+    }
+
+    private static void addShortName(final List<String> variants, final String name) {
+        if (name.length() >= MIN_SHORT_NAME_LENGTH && !variants.contains(name)) {
+            variants.add(name);
+        }
+    }
+
+    /**
+     * @return the text with each reference to the card replaced by "SN".
+     */
+    String apply(final String text) {
+        // (start, end) of each reference found, in order of where it ends.
+        final List<int[]> found = new ArrayList<>();
+        names.scan(text, (variant, end) -> {
+            final int start = end - names.getPatternLength(variant);
+            if (!wholeWord[variant] || (isWordBoundary(text, start - 1) && isWordBoundary(text, end))) {
+                found.add(new int[]{start, end});
+            }
+        });
+        if (found.isEmpty()) {
+            return text;
+        }
+        // the longest of the references starting first, then the next after it and so on.
+        found.sort((a, b) -> a[0] != b[0] ? Integer.compare(a[0], b[0]) : Integer.compare(b[1], a[1]));
+        final StringBuilder sb = new StringBuilder(text.length());
+        int copied = 0;
+        for (int[] reference : found) {
+            final int start = reference[0];
+            if (start < copied) {
+                continue;
+            }
+            sb.append(text, copied, start);
+            if (text.startsWith(NAMED, start - NAMED.length())) {
+                sb.append(text, start, reference[1]);
+            } else {
+                sb.append(SN);
+            }
+            copied = reference[1];
+        }
+        return sb.append(text, copied, text.length()).toString();
+    }
+
+    private static boolean isWordBoundary(final String text, final int index) {
+        if (index < 0 || index >= text.length()) {
+            return true;
+        }
+        final char c = text.charAt(index);
+        return !Character.isLetterOrDigit(c) && c != '-' && c != '{' && c != '}';
+    }
+
+}
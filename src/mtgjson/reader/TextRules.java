@@ -0,0 +1,74 @@
+package mtgjson.reader;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An ordered table of text replacements which are applied in turn.
+ * <p>
+ * Each regex rule is compiled once and keeps a matcher per thread which is
+ * reset for each input, so applying the table never compiles a pattern.
+ * Literal rules do not use regex at all. The result is the same as chaining
+ * the equivalent {@code String.replaceAll}, {@code replaceFirst} and
+ * {@code replace} calls.
+ */
+final class TextRules {
+
+    interface Rule {
+        String apply(String text);
+    }
+
+    private final List<Rule> rules;
+
+    private TextRules(final Rule... rules) {
+        this.rules = Arrays.asList(rules);
+    }
+
+    static TextRules of(final Rule... rules) {
+        return new TextRules(rules);
+    }
+
+    String apply(final String text) {
+        String result = text;
+        for (Rule rule : rules) {
+            result = rule.apply(result);
+        }
+        return result;
+    }
+
+    /**
+     * Equivalent to {@code text.replaceAll(regex, replacement)}.
+     */
+    static Rule replaceAll(final String regex, final String replacement) {
+        final ThreadLocal<Matcher> matcher = newMatcher(regex);
+        return text -> matcher.get().reset(text).replaceAll(replacement);
+    }
+
+    /**
+     * Equivalent to {@code text.replaceFirst(regex, replacement)}.
+     */
+    static Rule replaceFirst(final String regex, final String replacement) {
+        final ThreadLocal<Matcher> matcher = newMatcher(regex);
+        return text -> matcher.get().reset(text).replaceFirst(replacement);
+    }
+
+    /**
+     * Equivalent to {@code text.replace(target, replacement)}.
+     */
+    static Rule replace(final String target, final String replacement) {
+        return text -> StringUtils.replace(text, target, replacement);
+    }
+
+    /**
+     * Returns a reusable matcher for the given regex which is only valid on the calling thread.
+     */
+    static ThreadLocal<Matcher> newMatcher(final String regex) {
+        final Pattern pattern = Pattern.compile(regex);
+        return ThreadLocal.withInitial(() -> pattern.matcher(""));
+    }
+
+}
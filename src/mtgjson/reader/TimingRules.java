@@ -0,0 +1,198 @@
+package mtgjson.reader;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decides the "timing" property of a script from a table of rules, the first rule
+ * whose conditions all hold gives the timing.
+ * <p>
+ * Each line of the table is a timing followed by its conditions, eg.
+ * <pre>
+ * flash    ability:Flash !ability:Flashback
+ * </pre>
+ * A condition is a card field (type, subtype, ability or effect) and text which the
+ * field must contain, or must not contain if it starts with "!". Blank lines and "#"
+ * comments are ignored and the last rule should have no conditions.
+ * <p>
+ * Every distinct condition is a bit in a card's features, which are found with one
+ * {@link AhoCorasick} scan of each field and kept by the card (see
+ * {@link CardData#getTiming(TimingRules)}), so classifying a card only compares bits.
+ */
+public final class TimingRules {
+
+    enum Field {
+        TYPE("type"),
+        SUBTYPE("subtype"),
+        ABILITY("ability"),
+        EFFECT("effect");
+
+        private final String key;
+
+        Field(final String key) {
+            this.key = key;
+        }
+
+        static Field forKey(final String key) {
+            for (Field field : values()) {
+                if (field.key.equals(key)) {
+                    return field;
+                }
+            }
+            return null;
+        }
+    }
+
+    // The rules used unless another table is given (see ScriptGenerator.Builder#timingRules).
+    private static final List<String> DEFAULT_TABLE = Collections.unmodifiableList(Arrays.asList(
+        "flash        ability:Flash !ability:Flashback",
+        "storm        ability:Storm",
+        "counter      type:Instant effect:Counter",
+        "removal      type:Instant",
+        "land         type:Land",
+        "equipment    subtype:Equipment",
+        "aura         subtype:Aura",
+        "fmain        type:Creature ability:Haste",
+        "fmain        type:Creature ability:Bolster",
+        "fmain        type:Creature ability:Exalted",
+        "smain        type:Creature ability:Defender",
+        "main         type:Creature",
+        "artifact     type:Artifact",
+        "enchantment  type:Enchantment",
+        "main"
+    ));
+
+    public static final TimingRules DEFAULT = parse(DEFAULT_TABLE, "default");
+
+    // The timing used if no rule matches.
+    private static final String DEFAULT_TIMING = "main";
+
+    private static final int MAX_FEATURES = Long.SIZE;
+
+    private final String source;
+
+    // per rule, the timing and the feature bits which must be set / must not be set.
+    private final String[] timings;
+    private final long[] required;
+    private final long[] excluded;
+
+    // per field, the texts looked for and the feature bit of each.
+    private final Map<Field, AhoCorasick> scanners = new EnumMap<>(Field.class);
+    private final Map<Field, long[]> featureBits = new EnumMap<>(Field.class);
+
+    private TimingRules(final String source, final List<String[]> rules) {
+        this.source = source;
+        this.timings = new String[rules.size()];
+        this.required = new long[rules.size()];
+        this.excluded = new long[rules.size()];
+
+        // "field:text" -> feature bit, in order of first use.
+        final Map<String, Integer> features = new LinkedHashMap<>();
+        final Map<Field, List<String>> fieldTexts = new EnumMap<>(Field.class);
+        final Map<Field, List<Integer>> fieldBits = new EnumMap<>(Field.class);
+        for (int r = 0; r < rules.size(); r++) {
+            final String[] rule = rules.get(r);
+            timings[r] = rule[0];
+            for (int i = 1; i < rule.length; i++) {
+                final boolean negated = rule[i].startsWith("!");
+                final String condition = negated ? rule[i].substring(1) : rule[i];
+                final int colon = condition.indexOf(':');
+                final Field field = colon > 0 ? Field.forKey(condition.substring(0, colon)) : null;
+                if (field == null || colon == condition.length() - 1) {
+                    throw new IllegalArgumentException("Invalid timing condition in " + source + ": " + rule[i]);
+                }
+                Integer bit = features.get(condition);
+                if (bit == null) {
+                    bit = features.size();
+                    if (bit == MAX_FEATURES) {
+                        throw new IllegalArgumentException("More than " + MAX_FEATURES + " timing conditions in " + source);
+                    }
+                    features.put(condition, bit);
+                    fieldTexts.computeIfAbsent(field, f -> new ArrayList<>()).add(condition.substring(colon + 1));
+                    fieldBits.computeIfAbsent(field, f -> new ArrayList<>()).add(bit);
+                }
+                if (negated) {
+                    excluded[r] |= 1L << bit;
+                } else {
+                    required[r] |= 1L << bit;
+                }
+            }
+        }
+        for (Map.Entry<Field, List<String>> entry : fieldTexts.entrySet()) {
+            final List<Integer> bits = fieldBits.get(entry.getKey());
+            final long[] masks = new long[bits.size()];
+            for (int i = 0; i < masks.length; i++) {
+                masks[i] = 1L << bits.get(i);
+            }
+            scanners.put(entry.getKey(), new AhoCorasick(entry.getValue()));
+            featureBits.put(entry.getKey(), masks);
+        }
+    }
+
+    /**
+     * Reads a rule table from a file (see the class description for the format).
+     */
+    public static TimingRules load(final Path file) throws IOException {
+        return parse(Files.readAllLines(file, StandardCharsets.UTF_8), file.toString());
+    }
+
+    static TimingRules parse(final List<String> lines, final String source) {
+        final List<String[]> rules = new ArrayList<>();
+        for (String line : lines) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            rules.add(line.split("\\s+"));
+        }
+        return new TimingRules(source, rules);
+    }
+
+    /**
+     * @return the bits of the conditions in this table which hold for the given card fields (each may be null).
+     */
+    long getFeatures(final String type, final String subTypes, final String abilityText, final String effectText) {
+        final long[] features = new long[1];
+        scan(Field.TYPE, type, features);
+        scan(Field.SUBTYPE, subTypes, features);
+        scan(Field.ABILITY, abilityText, features);
+        scan(Field.EFFECT, effectText, features);
+        return features[0];
+    }
+
+    private void scan(final Field field, final String text, final long[] features) {
+        final AhoCorasick scanner = scanners.get(field);
+        if (scanner == null || text == null) {
+            return;
+        }
+        final long[] masks = featureBits.get(field);
+        scanner.scan(text, (pattern, end) -> features[0] |= masks[pattern]);
+    }
+
+    /**
+     * @return the timing given by the first rule which holds for a card with the given features.
+     */
+    String getTiming(final long features) {
+        for (int i = 0; i < timings.length; i++) {
+            if ((features & required[i]) == required[i] && (features & excluded[i]) == 0) {
+                return timings[i];
+            }
+        }
+        return DEFAULT_TIMING;
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+
+}